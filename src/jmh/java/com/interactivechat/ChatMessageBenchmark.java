@@ -0,0 +1,123 @@
+/*
+
+Copyright (c) 2021, Richard Cane
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package com.interactivechat;
+
+import java.awt.Color;
+import java.util.concurrent.TimeUnit;
+
+import net.runelite.client.chat.ChatColorType;
+import net.runelite.client.chat.ChatMessageBuilder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The work the parse worker does for every incoming message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChatMessageBenchmark {
+  private static final Color TEXT_COLOR = new Color(85, 175, 251);
+
+  @Param({ChatCorpus.PLAIN, ChatCorpus.SINGLE_LINK, ChatCorpus.MULTI_LINK, ChatCorpus.SPAM, ChatCorpus.MIXED})
+  public String corpus;
+
+  @Param({"80"})
+  public int length;
+
+  private final PluginMetrics metrics = new PluginMetrics();
+  private final TitleDictionary titles = new TitleDictionary(null);
+  private final MessageSpanStore spanStore = new MessageSpanStore(1024);
+  private final ChatParsePipeline pipeline = new ChatParsePipeline(null, null, spanStore, titles, metrics);
+  private String[] messages;
+  private int next;
+
+  @Setup
+  public void setUp() {
+    messages = ChatCorpus.messages(corpus, 1024, length, 42);
+  }
+
+  private String nextMessage() {
+    final String message = messages[next];
+    next = (next + 1) & 1023;
+    return message;
+  }
+
+  @Benchmark
+  public String legacyRewriteMessage() {
+    return legacyRewrite(nextMessage());
+  }
+
+  @Benchmark
+  public ChatParsePipeline.Parsed parse() {
+    return pipeline.parse(nextMessage(), TEXT_COLOR);
+  }
+
+  @Benchmark
+  public void parseAndPut() {
+    final ChatParsePipeline.Parsed parsed = pipeline.parse(nextMessage(), TEXT_COLOR);
+    if (parsed != null) {
+      spanStore.put(next, parsed.plainText, parsed.spans);
+    }
+  }
+
+  // the original ChatMessageBuilder and regex based rewrite
+  private static String legacyRewrite(String message) {
+    final String[] parts = LegacyLayout.BRACKETED_PATTERN.split(message);
+    if (parts.length == 1 && !message.startsWith(LegacyLayout.LEFT_DELIMITER)) {
+      return null;
+    }
+
+    ChatMessageBuilder builder = new ChatMessageBuilder();
+    for (String part : parts) {
+      if (!part.startsWith(LegacyLayout.LEFT_DELIMITER) || !part.endsWith(LegacyLayout.RIGHT_DELIMITER)) {
+        builder.append(ChatColorType.NORMAL);
+        builder.append(part);
+        continue;
+      }
+
+      final String searchTerm = part.substring(1, part.length() - 1);
+      builder.append(TEXT_COLOR, String.format("[%s]", searchTerm.trim().replaceAll(" +", " ")));
+    }
+
+    return builder.build().replaceAll("<lt>", "<").replaceAll("<gt>", ">");
+  }
+}
@@ -0,0 +1,127 @@
+/*
+
+Copyright (c) 2021, Richard Cane
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package com.interactivechat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Finding the closest title to a misspelled term with the BK-tree, compared
+ * to computing the distance to every title.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CorrectionBenchmark {
+  private static final String LETTERS = "abcdefghijklmnopqrstuvwxyz";
+
+  private TitleCorrector corrector;
+  private String[] titles;
+  private String[] terms;
+  private int next;
+
+  @Setup
+  public void setUp() throws IOException {
+    final File directory = Files.createTempDirectory("titles").toFile();
+    final TitleDictionary.Loaded loaded = new TitleDictionary(null, directory).loadTitles();
+    corrector = loaded.corrector;
+
+    titles = new String[loaded.index.size()];
+    for (int i = 0; i < titles.length; i++) {
+      titles[i] = loaded.index.title(i).toLowerCase();
+    }
+
+    // one or two random edits of a random title
+    final Random random = new Random(42);
+    terms = new String[1024];
+    for (int i = 0; i < terms.length; i++) {
+      final StringBuilder term = new StringBuilder(titles[random.nextInt(titles.length)]);
+      final int edits = 1 + random.nextInt(2);
+      for (int edit = 0; edit < edits && term.length() > 1; edit++) {
+        final int at = random.nextInt(term.length());
+        final char letter = LETTERS.charAt(random.nextInt(LETTERS.length()));
+        switch (random.nextInt(3)) {
+          case 0:
+            term.deleteCharAt(at);
+            break;
+          case 1:
+            term.insert(at, letter);
+            break;
+          default:
+            term.setCharAt(at, letter);
+            break;
+        }
+      }
+      terms[i] = term.toString();
+    }
+  }
+
+  private String nextTerm() {
+    final String term = terms[next];
+    next = (next + 1) & 1023;
+    return term;
+  }
+
+  @Benchmark
+  public String bkTree() {
+    return corrector.correct(nextTerm());
+  }
+
+  @Benchmark
+  public String linearScan() {
+    final String term = nextTerm();
+    final int maxDistance = Math.min(TitleCorrector.MAX_DISTANCE, term.length() / 4);
+    String best = null;
+    int bestDistance = maxDistance + 1;
+    for (String title : titles) {
+      final int distance = TitleCorrector.distance(term, title);
+      if (distance < bestDistance) {
+        best = title;
+        bestDistance = distance;
+      }
+    }
+    return best;
+  }
+}
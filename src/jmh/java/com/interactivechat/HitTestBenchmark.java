@@ -0,0 +1,109 @@
+/*
+
+Copyright (c) 2021, Richard Cane
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package com.interactivechat;
+
+import java.awt.Canvas;
+import java.awt.Point;
+import java.awt.event.InputEvent;
+import java.awt.event.MouseEvent;
+import java.lang.reflect.Constructor;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Hit testing the hovered term, as done on every hover and click.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HitTestBenchmark {
+  private final MatchManager matchManager = new MatchManager();
+  private final Point hit = new Point(60, 320);
+  private final Point miss = new Point(600, 320);
+  private InteractiveChatOverlayMouseListener mouseListener;
+  private MouseEvent leftClick;
+  private MouseEvent rightClick;
+
+  @Setup
+  public void setUp() throws ReflectiveOperationException {
+    // a term wrapped over three lines
+    matchManager.publish(MatchSnapshot.of(Arrays.asList(
+        new Match(1, "dragon scimitar", 300, 300, 180),
+        new Match(1, "dragon scimitar", 10, 314, 200),
+        new Match(1, "dragon scimitar", 10, 328, 60))));
+
+    final Constructor<InteractiveChatOverlayMouseListener> constructor = InteractiveChatOverlayMouseListener.class
+        .getDeclaredConstructor(MatchManager.class, HoverState.class, PluginMetrics.class, TitleDictionary.class,
+            LinkDispatcher.class);
+    constructor.setAccessible(true);
+    mouseListener = constructor.newInstance(
+        matchManager, new HoverState(), new PluginMetrics(), new TitleDictionary(null),
+        new LinkDispatcher(url -> { }, Runnable::run));
+
+    // clicks land next to the term so the benchmark never opens a browser
+    final Canvas canvas = new Canvas();
+    leftClick = new MouseEvent(canvas, MouseEvent.MOUSE_PRESSED, 0, InputEvent.BUTTON1_DOWN_MASK,
+        miss.x, miss.y, 1, false, MouseEvent.BUTTON1);
+    rightClick = new MouseEvent(canvas, MouseEvent.MOUSE_PRESSED, 0, InputEvent.BUTTON3_DOWN_MASK,
+        miss.x, miss.y, 1, false, MouseEvent.BUTTON3);
+  }
+
+  @Benchmark
+  public boolean pointInBoundsHit() {
+    return matchManager.pointInBounds(hit);
+  }
+
+  @Benchmark
+  public boolean pointInBoundsMiss() {
+    return matchManager.pointInBounds(miss);
+  }
+
+  @Benchmark
+  public MouseEvent mousePressedLeft() {
+    return mouseListener.mousePressed(leftClick);
+  }
+
+  @Benchmark
+  public MouseEvent mousePressedRight() {
+    return mouseListener.mousePressed(rightClick);
+  }
+}
@@ -0,0 +1,112 @@
+/*
+
+Copyright (c) 2021, Richard Cane
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package com.interactivechat;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.runelite.api.FontTypeFace;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Laying out keyword hitboxes for a hovered message. Narrower widgets make
+ * the same message wrap over more lines.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LayoutBenchmark {
+  private static final int MESSAGES = 256;
+
+  @Param({ChatCorpus.SINGLE_LINK, ChatCorpus.MULTI_LINK, ChatCorpus.SPAM})
+  public String corpus;
+
+  @Param({"40", "80", "200"})
+  public int length;
+
+  @Param({"486", "240", "120"})
+  public int width;
+
+  private final GlyphWidthCache glyphs = new GlyphWidthCache();
+  private final MessageLayoutCache layoutCache = new MessageLayoutCache(
+      glyphs, new TitleDictionary(null), new MessageSpanStore(1024), new PluginMetrics());
+  private final SpanBuffer spans = new SpanBuffer();
+  private final FontTypeFace font = Stubs.font();
+  private StubWidget[] widgets;
+  private int next;
+
+  @Setup
+  public void setUp() {
+    final String[] messages = ChatCorpus.messages(corpus, MESSAGES, length, 42);
+    widgets = new StubWidget[MESSAGES];
+    for (int i = 0; i < MESSAGES; i++) {
+      final StubWidget widget = new StubWidget(0, 10, 300, width, InteractiveChat.CHATLINE_HEIGHT);
+      widget.font = font;
+      widget.text = messages[i];
+      widgets[i] = widget;
+      layoutCache.get(widget.widget).layout(font, width);
+    }
+  }
+
+  private StubWidget nextWidget() {
+    final StubWidget widget = widgets[next];
+    next = (next + 1) % MESSAGES;
+    return widget;
+  }
+
+  @Benchmark
+  public List<Match> legacyLayout() {
+    return LegacyLayout.layout(nextWidget().widget);
+  }
+
+  @Benchmark
+  public List<Match> uncachedLayout() {
+    final String text = nextWidget().text;
+    BracketTokenizer.tokenize(text, spans);
+    return new MessageLayout(text, spans, glyphs).layout(font, width);
+  }
+
+  @Benchmark
+  public List<Match> cachedLayout() {
+    return layoutCache.get(nextWidget().widget).layout(font, width);
+  }
+}
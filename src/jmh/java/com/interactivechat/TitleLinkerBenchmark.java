@@ -0,0 +1,112 @@
+/*
+
+Copyright (c) 2021, Richard Cane
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package com.interactivechat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Finding dictionary titles in unbracketed chat, and loading the dictionary
+ * from its compiled form compared to building it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TitleLinkerBenchmark {
+  @Param({ChatCorpus.PLAIN, ChatCorpus.SINGLE_LINK, ChatCorpus.MIXED})
+  public String corpus;
+
+  @Param({"80"})
+  public int length;
+
+  private final SpanBuffer spans = new SpanBuffer();
+  private final SpanBuffer linked = new SpanBuffer();
+  private final TitleLinker linker = new TitleLinker();
+  private TitleAutomaton automaton;
+  private byte[] compiled;
+  private String[] messages;
+  private int next;
+
+  @Setup
+  public void setUp() throws IOException {
+    final File directory = Files.createTempDirectory("titles").toFile();
+    automaton = new TitleDictionary(null, directory).loadTitles().automaton;
+
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      automaton.write(out);
+    }
+    compiled = bytes.toByteArray();
+
+    // strip the brackets so every term has to be found by the linker
+    messages = ChatCorpus.messages(corpus, 1024, length, 42);
+    for (int i = 0; i < messages.length; i++) {
+      messages[i] = messages[i].replace("[", "").replace("]", "");
+    }
+  }
+
+  private String nextMessage() {
+    final String message = messages[next];
+    next = (next + 1) & 1023;
+    return message;
+  }
+
+  @Benchmark
+  public int link() {
+    final String message = nextMessage();
+    BracketTokenizer.tokenize(message, spans);
+    return linker.link(automaton, message, spans, linked);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public TitleAutomaton loadCompiled() {
+    return TitleAutomaton.read(ByteBuffer.wrap(compiled));
+  }
+}
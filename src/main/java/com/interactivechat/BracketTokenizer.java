@@ -0,0 +1,80 @@
+/*
+
+Copyright (c) 2021, Richard Cane
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package com.interactivechat;
+
+/**
+ * Splits a message into bracketed and plain spans in a single pass.
+ *
+ * This produces the same parts as splitting on
+ * {@code ((?<=\])|(?=\[))}: a span ends after every {@code ]} and before
+ * every {@code [}, so unbalanced or nested brackets such as {@code [a [b] c]}
+ * yield {@code "[a "}, {@code "[b]"} and {@code " c]"}. A span is bracketed
+ * when it starts with {@code [} and ends with {@code ]}.
+ */
+final class BracketTokenizer {
+  static final char LEFT_DELIMITER = '[';
+  static final char RIGHT_DELIMITER = ']';
+
+  private BracketTokenizer() {
+  }
+
+  /**
+   * Fills {@code spans} with the parts of {@code text} and returns the number
+   * of bracketed parts found.
+   */
+  static int tokenize(CharSequence text, SpanBuffer spans) {
+    spans.clear();
+
+    final int length = text.length();
+    int start = 0;
+    for (int i = 0; i < length; i++) {
+      final char c = text.charAt(i);
+      if (c == LEFT_DELIMITER && i > start) {
+        add(text, start, i, spans);
+        start = i;
+      } else if (c == RIGHT_DELIMITER) {
+        add(text, start, i + 1, spans);
+        start = i + 1;
+      }
+    }
+
+    if (start < length) {
+      add(text, start, length, spans);
+    }
+
+    return spans.bracketedCount();
+  }
+
+  private static void add(CharSequence text, int start, int end, SpanBuffer spans) {
+    final boolean bracketed = end - start >= 2
+        && text.charAt(start) == LEFT_DELIMITER
+        && text.charAt(end - 1) == RIGHT_DELIMITER;
+
+    spans.add(start, end, bracketed);
+  }
+}
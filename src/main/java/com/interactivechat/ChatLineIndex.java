@@ -0,0 +1,164 @@
+/*
+
+Copyright (c) 2021, Richard Cane
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package com.interactivechat;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+import net.runelite.api.widgets.Widget;
+
+/**
+ * The visible message line widgets of a chat container, sorted by their top
+ * edge.
+ *
+ * Bounds are captured when the index is built. Scrolling the container only
+ * shifts the lookup by the scroll delta, so the index only needs rebuilding
+ * when the lines themselves are rebuilt.
+ */
+class ChatLineIndex {
+  private final int yOffset;
+  private final int heightPadding;
+
+  private Widget container;
+  private boolean valid;
+  private int generation;
+  private int scrollY;
+  private final Rectangle containerBounds = new Rectangle();
+
+  private int size;
+  private Widget[] lines = new Widget[0];
+  private int[] top = new int[0];
+  private int[] bottom = new int[0];
+
+  /**
+   * @param yOffset       added to the top of every line's bounds
+   * @param heightPadding added to the height of every line's bounds
+   */
+  ChatLineIndex(int yOffset, int heightPadding) {
+    this.yOffset = yOffset;
+    this.heightPadding = heightPadding;
+  }
+
+  boolean isValid(Widget container) {
+    return valid && this.container == container;
+  }
+
+  void invalidate() {
+    valid = false;
+    container = null;
+    generation++;
+  }
+
+  /**
+   * Changes every time the index is rebuilt or invalidated, so indexes built
+   * on top of this one can tell when they're out of date.
+   */
+  int generation() {
+    return generation;
+  }
+
+  void rebuild(Widget container, Predicate<Widget> include) {
+    final Widget[] children = container.getChildren();
+    final int childCount = children == null ? 0 : children.length;
+
+    // sort by top edge, ties broken by child order
+    final long[] keys = new long[childCount];
+    final Rectangle[] bounds = new Rectangle[childCount];
+    int count = 0;
+    for (int i = 0; i < childCount; i++) {
+      final Widget child = children[i];
+      if (child == null || !include.test(child)) {
+        continue;
+      }
+
+      final Rectangle childBounds = child.getBounds();
+      childBounds.y += yOffset;
+      childBounds.height += heightPadding;
+
+      bounds[i] = childBounds;
+      keys[count++] = ((long) childBounds.y << 32) | i;
+    }
+    Arrays.sort(keys, 0, count);
+
+    ensureCapacity(count);
+    for (int i = 0; i < count; i++) {
+      final int child = (int) keys[i];
+      final Rectangle childBounds = bounds[child];
+
+      lines[i] = children[child];
+      top[i] = childBounds.y;
+      bottom[i] = childBounds.y + childBounds.height;
+    }
+    Arrays.fill(lines, count, lines.length, null);
+
+    containerBounds.setBounds(container.getBounds());
+    this.size = count;
+    this.container = container;
+    this.scrollY = container.getScrollY();
+    this.valid = true;
+    generation++;
+  }
+
+  int size() {
+    return size;
+  }
+
+  Widget line(int line) {
+    return lines[line];
+  }
+
+  int top(int line) {
+    return top[line];
+  }
+
+  int bottom(int line) {
+    return bottom[line];
+  }
+
+  /**
+   * The scroll position of the container when the index was built.
+   */
+  int scrollY() {
+    return scrollY;
+  }
+
+  boolean containerContains(int x, int y) {
+    return valid && containerBounds.contains(x, y);
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (lines.length >= capacity) {
+      return;
+    }
+
+    lines = new Widget[capacity];
+    top = new int[capacity];
+    bottom = new int[capacity];
+  }
+}
@@ -0,0 +1,141 @@
+/*
+
+Copyright (c) 2021, Richard Cane
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package com.interactivechat;
+
+import java.awt.Color;
+
+import net.runelite.client.chat.ChatColorType;
+import net.runelite.client.util.ColorUtil;
+
+/**
+ * Writes the colored form of a tokenized chat message in a single pass into a
+ * reused buffer, along with the plain text the chatbox will show for it and
+ * that text's spans.
+ *
+ * Plain parts are copied as they are, so any {@code <lt>}/{@code <gt>}
+ * escapes from the server stay escaped. Bracketed terms are trimmed and runs
+ * of spaces inside them collapsed to one. Linked terms are colored as they
+ * are.
+ */
+class ChatMessageRewriter {
+  private static final String NORMAL_COLOR_TAG = "<col" + ChatColorType.NORMAL.name() + ">";
+  private static final String CLOSING_COLOR_TAG = "</col>";
+
+  private final StringBuilder formatted = new StringBuilder(256);
+  private final StringBuilder plain = new StringBuilder(128);
+  private final SpanBuffer plainSpans = new SpanBuffer();
+
+  private Color termColor;
+  private String termColorTag;
+
+  /**
+   * Returns the colored message. {@link #plainText()} then returns the same
+   * message without formatting tags.
+   */
+  String rewrite(String message, SpanBuffer spans, Color color) {
+    final String colorTag = colorTag(color);
+    formatted.setLength(0);
+    plain.setLength(0);
+    plainSpans.clear();
+
+    final int spanCount = spans.size();
+    for (int span = 0; span < spanCount; span++) {
+      final int start = spans.start(span);
+      final int end = spans.end(span);
+      final int plainStart = plain.length();
+      if (spans.isLinked(span)) {
+        formatted.append(colorTag).append(message, start, end).append(CLOSING_COLOR_TAG);
+        plain.append(message, start, end);
+        plainSpans.addLinked(plainStart, plain.length());
+        continue;
+      }
+
+      if (!spans.isBracketed(span)) {
+        formatted.append(NORMAL_COLOR_TAG).append(message, start, end);
+        plain.append(message, start, end);
+        plainSpans.add(plainStart, plain.length(), false);
+        continue;
+      }
+
+      formatted.append(colorTag).append(InteractiveChat.LEFT_DELIMITER);
+      plain.append(InteractiveChat.LEFT_DELIMITER);
+      appendTerm(message, start + 1, end - 1);
+      formatted.append(InteractiveChat.RIGHT_DELIMITER).append(CLOSING_COLOR_TAG);
+      plain.append(InteractiveChat.RIGHT_DELIMITER);
+      plainSpans.add(plainStart, plain.length(), true);
+    }
+
+    return formatted.toString();
+  }
+
+  String plainText() {
+    return plain.toString();
+  }
+
+  /**
+   * The spans of {@link #plainText()}, the same ones tokenizing and linking it
+   * again would give.
+   */
+  SpanBuffer plainSpans() {
+    return plainSpans;
+  }
+
+  // same as term.trim().replaceAll(" +", " ")
+  private void appendTerm(String message, int start, int end) {
+    while (start < end && message.charAt(start) <= ' ') {
+      start++;
+    }
+    while (end > start && message.charAt(end - 1) <= ' ') {
+      end--;
+    }
+
+    boolean space = false;
+    for (int i = start; i < end; i++) {
+      final char c = message.charAt(i);
+      if (c == ' ') {
+        if (space) {
+          continue;
+        }
+        space = true;
+      } else {
+        space = false;
+      }
+
+      formatted.append(c);
+      plain.append(c);
+    }
+  }
+
+  private String colorTag(Color color) {
+    if (!color.equals(termColor)) {
+      termColor = color;
+      termColorTag = ColorUtil.colorTag(color);
+    }
+    return termColorTag;
+  }
+}
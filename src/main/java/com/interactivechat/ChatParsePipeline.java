@@ -0,0 +1,271 @@
+/*
+
+Copyright (c) 2021, Richard Cane
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package com.interactivechat;
+
+import java.awt.Color;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import net.runelite.api.MessageNode;
+import net.runelite.client.callback.ClientThread;
+import net.runelite.client.util.Text;
+
+/**
+ * Tokenizes and rewrites incoming chat messages on a worker thread. Only
+ * setting the formatted message on its node and queueing the chat refresh
+ * happen back on the client thread.
+ *
+ * The incoming queue is bounded and drops its oldest message when full. By
+ * then that message is well above the visible chat lines, so it's left as
+ * plain text rather than making the client thread wait.
+ */
+@Singleton
+class ChatParsePipeline {
+  private static final int QUEUE_CAPACITY = 64;
+
+  private final ClientThread clientThread;
+  private final ChatRefreshBatcher refreshBatcher;
+  private final MessageSpanStore spanStore;
+  private final TitleDictionary titles;
+  private final PluginMetrics metrics;
+
+  private final BlockingQueue<Pending> incoming = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+  private final Queue<Pending> parsed = new ConcurrentLinkedQueue<>();
+  private final AtomicBoolean applyScheduled = new AtomicBoolean();
+
+  // worker thread only
+  private final SpanBuffer spans = new SpanBuffer();
+  private final SpanBuffer linkedSpans = new SpanBuffer();
+  private final TitleLinker titleLinker = new TitleLinker();
+  private final ChatMessageRewriter rewriter = new ChatMessageRewriter();
+
+  private volatile boolean running;
+  private Thread worker;
+
+  @Inject
+  ChatParsePipeline(
+      ClientThread clientThread,
+      ChatRefreshBatcher refreshBatcher,
+      MessageSpanStore spanStore,
+      TitleDictionary titles,
+      PluginMetrics metrics) {
+    this.clientThread = clientThread;
+    this.refreshBatcher = refreshBatcher;
+    this.spanStore = spanStore;
+    this.titles = titles;
+    this.metrics = metrics;
+  }
+
+  synchronized void start() {
+    if (worker != null) {
+      return;
+    }
+
+    running = true;
+    worker = new Thread(this::run, "interactive-chat-parser");
+    worker.setDaemon(true);
+    worker.start();
+  }
+
+  synchronized void stop() {
+    if (worker == null) {
+      return;
+    }
+
+    running = false;
+    worker.interrupt();
+    // it may be mid parse, and a restarted worker would share its buffers
+    boolean interrupted = false;
+    while (worker.isAlive()) {
+      try {
+        worker.join();
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+
+    worker = null;
+    incoming.clear();
+    parsed.clear();
+  }
+
+  /**
+   * Hands a message to the worker. Called on the client thread.
+   */
+  void submit(MessageNode messageNode, String rawMessage, Color color) {
+    final Pending pending = new Pending(messageNode, rawMessage, color);
+    while (!incoming.offer(pending)) {
+      if (incoming.poll() != null) {
+        metrics.messageDropped();
+      }
+    }
+  }
+
+  /**
+   * Returns the rewritten message and its spans, or null if it has no
+   * bracketed or linked terms. Called on the worker thread.
+   */
+  Parsed parse(String rawMessage, Color color) {
+    final boolean recording = metrics.isRecording();
+    final long start = recording ? System.nanoTime() : 0;
+    final String message = rawMessage.indexOf('<') == -1 ? rawMessage : Text.removeFormattingTags(rawMessage);
+    BracketTokenizer.tokenize(message, spans);
+    SpanBuffer keywords = spans;
+    final TitleAutomaton automaton = titles.automaton();
+    if (automaton != null) {
+      titleLinker.link(automaton, message, spans, linkedSpans);
+      keywords = linkedSpans;
+    }
+
+    final int linkCount = keywords.keywordCount();
+    if (linkCount == 0) {
+      metrics.chatMessage(recording ? System.nanoTime() - start : 0, message.length(), 0, false);
+      return null;
+    }
+
+    final String formatted = rewriter.rewrite(message, keywords, color);
+    final String plain = rewriter.plainText();
+    final SpanBuffer plainSpans = rewriter.plainSpans();
+    resolveTitles(plain, plainSpans);
+    final Parsed result = new Parsed(formatted, plain, plainSpans.copy());
+    metrics.chatMessage(recording ? System.nanoTime() - start : 0, message.length(), linkCount, true);
+    return result;
+  }
+
+  // finds the page each term opens now, rather than when it's clicked
+  private void resolveTitles(String message, SpanBuffer spans) {
+    final TitleCorrector corrector = titles.corrector();
+    final TitlePrefixIndex index = titles.index();
+    if (corrector == null || index == null) {
+      return;
+    }
+
+    spans.setTitleGeneration(index.generation());
+    final int spanCount = spans.size();
+    for (int span = 0; span < spanCount; span++) {
+      if (spans.isLinked(span)) {
+        spans.setTitle(span, resolveTitle(index, corrector, message.substring(spans.start(span), spans.end(span))));
+      } else if (spans.isBracketed(span)) {
+        spans.setTitle(span, resolveTitle(index, corrector, message.substring(spans.start(span) + 1, spans.end(span) - 1)));
+      }
+    }
+  }
+
+  private static int resolveTitle(TitlePrefixIndex index, TitleCorrector corrector, String term) {
+    final String key = term.trim();
+    final int exact = index.find(key, 0, key.length());
+    if (exact != -1) {
+      return exact;
+    }
+
+    final String title = corrector.correct(key);
+    final int corrected = title == null ? -1 : index.find(title, 0, title.length());
+    return corrected == -1 ? SpanBuffer.NO_TITLE : SpanBuffer.corrected(corrected);
+  }
+
+  private void run() {
+    try {
+      while (running) {
+        final Pending pending = incoming.take();
+        try {
+          pending.result = parse(pending.rawMessage, pending.color);
+        } catch (RuntimeException e) {
+          // leave the message as it is rather than lose the worker
+          metrics.messageFailed();
+          continue;
+        }
+
+        if (pending.result != null) {
+          parsed.add(pending);
+          if (applyScheduled.compareAndSet(false, true)) {
+            clientThread.invokeLater(this::apply);
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      // stopped
+    }
+  }
+
+  private void apply() {
+    applyScheduled.set(false);
+    Pending pending;
+    while ((pending = parsed.poll()) != null) {
+      if (!running) {
+        // stopped since this batch was queued, and shutDown clears what it would fill
+        parsed.clear();
+        return;
+      }
+
+      // the client reuses nodes once its chat history is full
+      final MessageNode messageNode = pending.messageNode;
+      if (!pending.rawMessage.equals(messageNode.getValue())) {
+        continue;
+      }
+
+      final Parsed result = pending.result;
+      messageNode.setRuneLiteFormatMessage(result.formatted);
+      spanStore.put(messageNode.getId(), result.plainText, result.spans);
+      refreshBatcher.queue(messageNode);
+    }
+  }
+
+  static final class Parsed {
+    final String formatted;
+    final String plainText;
+    final SpanBuffer spans;
+
+    Parsed(String formatted, String plainText, SpanBuffer spans) {
+      this.formatted = formatted;
+      this.plainText = plainText;
+      this.spans = spans;
+    }
+  }
+
+  private static final class Pending {
+    final MessageNode messageNode;
+    final String rawMessage;
+    final Color color;
+    Parsed result;
+
+    Pending(MessageNode messageNode, String rawMessage, Color color) {
+      this.messageNode = messageNode;
+      this.rawMessage = rawMessage;
+      this.color = color;
+    }
+  }
+}
@@ -0,0 +1,91 @@
+/*
+
+Copyright (c) 2021, Richard Cane
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package com.interactivechat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import net.runelite.api.Client;
+import net.runelite.api.MessageNode;
+import net.runelite.client.callback.ClientThread;
+import net.runelite.client.chat.ChatMessageManager;
+
+/**
+ * Collects rewritten message nodes and updates them together, with a single
+ * chat refresh, on the next client frame. A burst of linked messages arriving
+ * in the same tick then rebuilds the chatbox once instead of once each.
+ *
+ * Only used from the client thread.
+ */
+@Singleton
+class ChatRefreshBatcher {
+  private final Client client;
+  private final ClientThread clientThread;
+  private final ChatMessageManager chatMessageManager;
+
+  private final List<MessageNode> pending = new ArrayList<>();
+  private boolean scheduled;
+
+  @Inject
+  ChatRefreshBatcher(Client client, ClientThread clientThread, ChatMessageManager chatMessageManager) {
+    this.client = client;
+    this.clientThread = clientThread;
+    this.chatMessageManager = chatMessageManager;
+  }
+
+  void queue(MessageNode messageNode) {
+    if (!pending.contains(messageNode)) {
+      pending.add(messageNode);
+    }
+
+    if (!scheduled) {
+      scheduled = true;
+      clientThread.invokeLater(this::flush);
+    }
+  }
+
+  void flush() {
+    scheduled = false;
+    if (pending.isEmpty()) {
+      return;
+    }
+
+    for (MessageNode messageNode : pending) {
+      chatMessageManager.update(messageNode);
+    }
+    pending.clear();
+    client.refreshChat();
+  }
+
+  void clear() {
+    pending.clear();
+  }
+}
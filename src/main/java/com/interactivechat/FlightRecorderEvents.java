@@ -0,0 +1,139 @@
+/*
+
+Copyright (c) 2021, Richard Cane
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package com.interactivechat;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder events for the plugin's hot paths. They are only
+ * created while the "Flight recorder events" option is on, and never on a
+ * runtime without {@code jdk.jfr}, see {@link PluginMetrics#FLIGHT_RECORDER}.
+ */
+final class FlightRecorderEvents {
+  private static final String CATEGORY = "Interactive Chat";
+
+  private FlightRecorderEvents() {
+  }
+
+  @Name("com.interactivechat.ChatMessage")
+  @Label("Chat Message")
+  @Description("A chat message parsed, and possibly rewritten, by onChatMessage")
+  @Category(CATEGORY)
+  @StackTrace(false)
+  static class ChatMessageEvent extends Event {
+    @Label("Parse Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long parseTime;
+
+    @Label("Message Length")
+    @Description("In characters")
+    int messageLength;
+
+    @Label("Link Count")
+    int linkCount;
+
+    @Label("Rewritten")
+    boolean rewritten;
+  }
+
+  @Name("com.interactivechat.Render")
+  @Label("Hover Render")
+  @Description("A frame in which the hovered keyword was resolved")
+  @Category(CATEGORY)
+  @StackTrace(false)
+  static class RenderEvent extends Event {
+    @Label("Widget Lookup Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long widgetLookupTime;
+
+    @Label("Keyword Index Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long keywordIndexTime;
+
+    @Label("Hit Test Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long hitTestTime;
+
+    @Label("Paint Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long paintTime;
+
+    @Label("Keyword Segments")
+    int segments;
+  }
+
+  @Name("com.interactivechat.Click")
+  @Label("Click")
+  @Description("A left click checked against the hovered keyword")
+  @Category(CATEGORY)
+  @StackTrace(false)
+  static class ClickEvent extends Event {
+    @Label("Hit Test Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long hitTestTime;
+
+    @Label("Hit")
+    boolean hit;
+  }
+
+  @Name("com.interactivechat.Counters")
+  @Label("Counters")
+  @Description("Running totals since the plugin started")
+  @Category(CATEGORY)
+  @StackTrace(false)
+  @Period("1 s")
+  static class CountersEvent extends Event {
+    @Label("Messages Processed")
+    long messagesProcessed;
+
+    @Label("Messages Rewritten")
+    long messagesRewritten;
+
+    @Label("Messages Dropped")
+    long messagesDropped;
+
+    @Label("Messages Failed")
+    long messagesFailed;
+
+    @Label("Layout Cache Hits")
+    long cacheHits;
+
+    @Label("Layout Cache Misses")
+    long cacheMisses;
+
+    @Label("Hover Frames Skipped")
+    long hoverFramesSkipped;
+  }
+}
@@ -0,0 +1,115 @@
+/*
+
+Copyright (c) 2021, Richard Cane
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package com.interactivechat;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import javax.inject.Singleton;
+
+import net.runelite.api.FontTypeFace;
+
+/**
+ * Per-font glyph advances, so the width of any part of a message can be
+ * worked out from prefix sums instead of calling
+ * {@link FontTypeFace#getTextWidth(String)} for every part and word.
+ *
+ * The prefix sums follow the client's own text measuring: {@code <lt>} and
+ * {@code <gt>} count as a single glyph and anything else between {@code <}
+ * and {@code >} takes no space.
+ */
+@Singleton
+class GlyphWidthCache {
+  private static final int GLYPH_COUNT = 256;
+
+  private final Map<FontTypeFace, int[]> advances = new IdentityHashMap<>();
+
+  int[] advances(FontTypeFace font) {
+    int[] fontAdvances = advances.get(font);
+    if (fontAdvances == null) {
+      fontAdvances = new int[GLYPH_COUNT];
+      for (char c = 0; c < GLYPH_COUNT; c++) {
+        fontAdvances[c] = font.getTextWidth(String.valueOf(c));
+      }
+
+      // a lone < opens a tag, so measure the escaped forms instead
+      fontAdvances['<'] = font.getTextWidth("<lt>");
+      fontAdvances['>'] = font.getTextWidth("<gt>");
+      advances.put(font, fontAdvances);
+    }
+
+    return fontAdvances;
+  }
+
+  /**
+   * Returns the prefix widths of {@code text}, where element {@code i} is the
+   * width of the first {@code i} characters. The width of {@code text[start,
+   * end)} is then {@code widths[end] - widths[start]}.
+   */
+  static int[] prefixWidths(FontTypeFace font, int[] advances, String text) {
+    final int length = text.length();
+    final int[] widths = new int[length + 1];
+
+    int width = 0;
+    int tagStart = -1;
+    for (int i = 0; i < length; i++) {
+      final char c = text.charAt(i);
+      if (c == '<') {
+        tagStart = i;
+      } else if (c == '>' && tagStart != -1) {
+        width += tagWidth(advances, text, tagStart + 1, i);
+        tagStart = -1;
+      } else if (tagStart == -1) {
+        width += c < GLYPH_COUNT ? advances[c] : font.getTextWidth(String.valueOf(c));
+      }
+
+      widths[i + 1] = width;
+    }
+
+    return widths;
+  }
+
+  void clear() {
+    advances.clear();
+  }
+
+  private static int tagWidth(int[] advances, String text, int start, int end) {
+    if (end - start != 2 || text.charAt(start + 1) != 't') {
+      return 0;
+    }
+
+    switch (text.charAt(start)) {
+      case 'l':
+        return advances['<'];
+      case 'g':
+        return advances['>'];
+      default:
+        return 0;
+    }
+  }
+}
@@ -0,0 +1,101 @@
+/*
+
+Copyright (c) 2021, Richard Cane
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package com.interactivechat;
+
+import javax.inject.Singleton;
+
+/**
+ * Tracks whether the hovered keyword needs resolving again.
+ *
+ * The input thread records the mouse position on every mouse event and the
+ * client thread bumps the chat revision whenever chat lines may have moved or
+ * changed. The overlay only resolves the hover when the mouse, the chat
+ * revision or the chat scroll position differ from the last time it did.
+ */
+@Singleton
+class HoverState {
+  static final int UP_TO_DATE = 0;
+  static final int MOUSE_MOVED = 1;
+  static final int CHAT_CHANGED = 2;
+
+  private static final long MOUSE_OUTSIDE = pack(-1, -1);
+
+  // written by the input thread, and by the client thread when the mouse listener is attached
+  private volatile long mouse = MOUSE_OUTSIDE;
+  // only written by the client thread
+  private volatile int chatRevision;
+
+  private long resolvedMouse = MOUSE_OUTSIDE;
+  private int resolvedChatRevision = -1;
+  private int resolvedScrollY;
+
+  void mouseMoved(int x, int y) {
+    mouse = pack(x, y);
+  }
+
+  void mouseExited() {
+    mouse = MOUSE_OUTSIDE;
+  }
+
+  void chatChanged() {
+    chatRevision++;
+  }
+
+  int mouseX() {
+    return (int) (resolvedMouse >> 32);
+  }
+
+  int mouseY() {
+    return (int) resolvedMouse;
+  }
+
+  /**
+   * Records the current mouse position and chat revision as resolved and
+   * returns what changed since the last call.
+   */
+  int update(int scrollY) {
+    final long currentMouse = mouse;
+    final int chat = chatRevision;
+
+    int state = UP_TO_DATE;
+    if (chat != resolvedChatRevision || scrollY != resolvedScrollY) {
+      state = CHAT_CHANGED;
+    } else if (currentMouse != resolvedMouse) {
+      state = MOUSE_MOVED;
+    }
+
+    resolvedMouse = currentMouse;
+    resolvedChatRevision = chat;
+    resolvedScrollY = scrollY;
+    return state;
+  }
+
+  private static long pack(int x, int y) {
+    return ((long) x << 32) | (y & 0xFFFFFFFFL);
+  }
+}
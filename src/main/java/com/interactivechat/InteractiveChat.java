@@ -28,10 +28,8 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package com.interactivechat;
 
-import java.util.regex.Pattern;
-
 class InteractiveChat {
-  static final Pattern BRACKETED_PATTERN = Pattern.compile("((?<=\\])|(?=\\[))", Pattern.DOTALL);
+  static final String CONFIG_GROUP = "interactivechat";
   static final String LEFT_DELIMITER = "[";
   static final String RIGHT_DELIMITER = "]";
   static final int CHATLINE_HEIGHT = 14;
@@ -34,7 +34,7 @@ import net.runelite.client.config.Config;
 import net.runelite.client.config.ConfigGroup;
 import net.runelite.client.config.ConfigItem;
 
-@ConfigGroup("interactivechat")
+@ConfigGroup(InteractiveChat.CONFIG_GROUP)
 public interface InteractiveChatConfig extends Config {
   @ConfigItem(
     keyName = "textColor",
@@ -63,4 +63,49 @@ public interface InteractiveChatConfig extends Config {
   default Color hoverColor() {
     return new Color(85, 175, 251, 150);
   }
+
+  @ConfigItem(
+    keyName = "linkTitles",
+    name = "Link known names",
+    description = "Make item, NPC and quest names interactive without brackets"
+  )
+  default boolean linkTitles() {
+    return false;
+  }
+
+  @ConfigItem(
+    keyName = "autocomplete",
+    name = "Suggest names",
+    description = "Suggest known names while typing a bracketed term, Tab accepts the first"
+  )
+  default boolean autocomplete() {
+    return true;
+  }
+
+  @ConfigItem(
+    keyName = "correctTerms",
+    name = "Correct misspelled names",
+    description = "Open the closest known page when a clicked term is misspelled, instead of searching for it"
+  )
+  default boolean correctTerms() {
+    return true;
+  }
+
+  @ConfigItem(
+    keyName = "wikiPreview",
+    name = "Wiki preview",
+    description = "Show a summary of the wiki page when you rest the mouse on a keyword. Looks the keyword up on the wiki"
+  )
+  default boolean wikiPreview() {
+    return false;
+  }
+
+  @ConfigItem(
+    keyName = "flightRecorderEvents",
+    name = "Flight recorder events",
+    description = "Emit Java Flight Recorder events for chat parsing, hover rendering and clicks. Needs a Java runtime with Flight Recorder"
+  )
+  default boolean flightRecorderEvents() {
+    return false;
+  }
 }
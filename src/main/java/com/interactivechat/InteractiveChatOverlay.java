@@ -29,38 +29,39 @@ package com.interactivechat;
 
 import java.awt.Dimension;
 import java.awt.Graphics2D;
-import java.awt.Point;
-import java.awt.Rectangle;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
 
 import javax.inject.Inject;
 
 import net.runelite.api.Client;
-import net.runelite.api.FontTypeFace;
+import net.runelite.api.ScriptID;
 import net.runelite.api.Varbits;
+import net.runelite.api.events.CanvasSizeChanged;
+import net.runelite.api.events.ChatMessage;
 import net.runelite.api.events.GameStateChanged;
 import net.runelite.api.events.ResizeableChanged;
+import net.runelite.api.events.ScriptPostFired;
+import net.runelite.api.events.VarbitChanged;
+import net.runelite.api.events.WidgetLoaded;
 import net.runelite.api.widgets.Widget;
 import net.runelite.api.widgets.WidgetInfo;
 import net.runelite.client.eventbus.Subscribe;
+import net.runelite.client.events.ConfigChanged;
 import net.runelite.client.ui.overlay.Overlay;
 import net.runelite.client.ui.overlay.OverlayLayer;
 import net.runelite.client.ui.overlay.OverlayPosition;
-import net.runelite.client.util.Text;
 
 class InteractiveChatOverlay extends Overlay {
   private final InteractiveChatConfig config;
   private final Client client;
   private MatchManager matchManager;
+  private final MessageLayoutCache layoutCache;
+  private final GlyphWidthCache glyphs;
+  private final HoverState hoverState;
+  private final PluginMetrics metrics;
+  private final WikiPreviewTooltip wikiPreviewTooltip;
 
-  static final Pattern BRACKETED_PATTERN = InteractiveChat.BRACKETED_PATTERN;
-  static final String LEFT_DELIMITER = InteractiveChat.LEFT_DELIMITER;
-  static final String RIGHT_DELIMITER = InteractiveChat.RIGHT_DELIMITER;
   static final int CHATLINE_HEIGHT = InteractiveChat.CHATLINE_HEIGHT;
   
   static final int VARPLAYER_ENABLE_SPLIT_CHAT = 287;
@@ -69,11 +70,36 @@ class InteractiveChatOverlay extends Overlay {
   private Widget messageLinesWidget;
   private Widget splitChatWidget;
 
+  // split chat state, kept up to date from events instead of read every frame
+  private Boolean splitChatVisible;
+  private boolean splitChatWidgetResolved;
+  // as last read, so unrelated var changes don't rebuild the render settings
+  private int transparentChatbox = -1;
+
+  // stage timings of the last hover resolve, for flight recorder events
+  private long widgetLookupTime;
+  private long keywordIndexTime;
+  private long hitTestTime;
+
+  // rebuilt lazily on the client thread after it's been reset
+  private final AtomicReference<RenderSettings> renderSettings = new AtomicReference<>();
+
+  // main chat hitboxes are 2px taller, split chat ones sit 2px lower
+  private final ChatLineIndex messageLines = new ChatLineIndex(0, 2);
+  private final ChatLineIndex splitChatLines = new ChatLineIndex(2, 0);
+  private final KeywordIndex messageKeywords = new KeywordIndex(true);
+  private final KeywordIndex splitChatKeywords = new KeywordIndex(false);
+
   @Inject
   InteractiveChatOverlay(
       InteractiveChatConfig config,
       Client client,
-      MatchManager matchManager
+      MatchManager matchManager,
+      MessageLayoutCache layoutCache,
+      GlyphWidthCache glyphs,
+      HoverState hoverState,
+      PluginMetrics metrics,
+      WikiPreviewTooltip wikiPreviewTooltip
   ) {
     setPosition(OverlayPosition.DYNAMIC);
     setLayer(OverlayLayer.ALWAYS_ON_TOP);
@@ -81,6 +107,11 @@ class InteractiveChatOverlay extends Overlay {
     this.config = config;
     this.client = client;
     this.matchManager = matchManager;
+    this.layoutCache = layoutCache;
+    this.glyphs = glyphs;
+    this.hoverState = hoverState;
+    this.metrics = metrics;
+    this.wikiPreviewTooltip = wikiPreviewTooltip;
   }
 
   @Override
@@ -89,38 +120,54 @@ class InteractiveChatOverlay extends Overlay {
       return null;
     }
 
-    final net.runelite.api.Point mouse = client.getMouseCanvasPosition();
-    final Point mousePoint = new Point(mouse.getX(), mouse.getY());
-    Widget messageWidget = getMessageWidgetAtPoint(mousePoint);
-    if (messageWidget == null) {
+    messageLinesWidget = getMessageLinesWidget();
+    final int scrollY = messageLinesWidget == null ? 0 : messageLinesWidget.getScrollY();
+    final int hoverUpdate = hoverState.update(scrollY);
+    if (hoverUpdate == HoverState.UP_TO_DATE) {
+      metrics.hoverFrameSkipped();
+      final MatchSnapshot hovered = matchManager.getSnapshot();
+      if (!hovered.isEmpty()) {
+        drawHoverEffects(graphics, hovered);
+      }
+      updateWikiPreview(hovered);
       return null;
     }
 
-    if (matchManager.pointInBounds(mousePoint)) {
-      drawHoverEffects(graphics, matchManager.getMatches());
-      return null;
-    }
+    final boolean recording = metrics.isRecording();
+    widgetLookupTime = keywordIndexTime = hitTestTime = 0;
 
-    final String message = Text.removeFormattingTags(messageWidget.getText());
-    final String[] messageParts = BRACKETED_PATTERN.split(message);
-    if (messageParts.length == 1 && !message.startsWith(LEFT_DELIMITER)) {
-      return null;
+    final MatchSnapshot hovered = resolveHover(hoverUpdate == HoverState.CHAT_CHANGED, recording);
+    matchManager.publish(hovered);
+
+    final long paintStart = recording ? System.nanoTime() : 0;
+    if (!hovered.isEmpty()) {
+      drawHoverEffects(graphics, hovered);
     }
 
-    List<Match> matches = this.getBracketMatches(messageWidget, messageParts);		
-    List<Match> keywords = this.splitBracketMatches(matches, mousePoint);
+    if (recording) {
+      metrics.render(widgetLookupTime, keywordIndexTime, hitTestTime, System.nanoTime() - paintStart, hovered.size());
+    }
+    updateWikiPreview(hovered);
+    return null;
+  }
 
-    matchManager.clear();
-    if (keywords.isEmpty()) {
-      return null;
+  private void updateWikiPreview(MatchSnapshot hovered) {
+    if (renderSettings().isWikiPreview()) {
+      wikiPreviewTooltip.update(hovered.isEmpty() ? null : hovered.term(0));
     }
+  }
 
-    for (Match match : keywords) {
-      matchManager.add(match);
+  private MatchSnapshot resolveHover(boolean chatChanged, boolean recording) {
+    final int mouseX = hoverState.mouseX();
+    final int mouseY = hoverState.mouseY();
+
+    // still over the same keyword, and it can't have moved
+    final MatchSnapshot hovered = matchManager.getSnapshot();
+    if (!chatChanged && hovered.segmentAt(mouseX, mouseY) != -1) {
+      return hovered;
     }
 
-    drawHoverEffects(graphics, keywords);
-    return null;
+    return getKeywordsAtPoint(mouseX, mouseY, recording);
   }
 
   @Subscribe
@@ -129,6 +176,7 @@ class InteractiveChatOverlay extends Overlay {
       case LOGGING_IN:
       case HOPPING:
         unsetContainerWidgets();
+        hoverState.chatChanged();
         break;
       default:
         break;
@@ -139,193 +187,221 @@ class InteractiveChatOverlay extends Overlay {
   public void onResizeableChanged(ResizeableChanged event)
   {
     unsetContainerWidgets();
+    hoverState.chatChanged();
+    // the chatbox may now be drawn with a different font
+    glyphs.clear();
+    layoutCache.invalidateLines();
+    renderSettings.set(null);
+  }
+
+  @Subscribe
+  public void onConfigChanged(ConfigChanged event) {
+    if (event.getGroup().equals(InteractiveChat.CONFIG_GROUP)) {
+      renderSettings.set(null);
+    }
+  }
+
+  @Subscribe
+  public void onVarbitChanged(VarbitChanged event) {
+    // read again when it's next needed
+    splitChatVisible = null;
+
+    final int transparentChatbox = client.getVarbitValue(Varbits.TRANSPARENT_CHATBOX.getId());
+    if (transparentChatbox == this.transparentChatbox) {
+      return;
+    }
+    this.transparentChatbox = transparentChatbox;
+
+    final RenderSettings settings = renderSettings.get();
+    if (settings != null) {
+      // a config change may have reset it in the meantime
+      renderSettings.compareAndSet(settings, settings.withWidenHighlight(RenderSettings.widenHighlight(client, transparentChatbox)));
+    }
+  }
+
+  @Subscribe
+  public void onWidgetLoaded(WidgetLoaded event) {
+    if (event.getGroupId() == WidgetInfo.PRIVATE_CHAT_MESSAGE.getGroupId()) {
+      splitChatWidget = null;
+      splitChatWidgetResolved = false;
+      splitChatLines.invalidate();
+      splitChatKeywords.invalidate();
+    }
+  }
+
+  /**
+   * Drops the hovered term, for when the overlay stops being drawn.
+   */
+  void clearHover() {
+    matchManager.clear();
+    if (renderSettings().isWikiPreview()) {
+      wikiPreviewTooltip.update(null);
+    }
   }
 
   public void unsetContainerWidgets() {
     messageLinesWidget = null;
     splitChatWidget = null;
+    splitChatVisible = null;
+    splitChatWidgetResolved = false;
+    messageLines.invalidate();
+    splitChatLines.invalidate();
+    messageKeywords.invalidate();
+    splitChatKeywords.invalidate();
   }
 
-  private Widget getMessageWidgetAtPoint(Point point) {
-    messageLinesWidget = getMessageLinesWidget();
-    if (messageLinesWidget != null && messageLinesWidget.getBounds().contains(point)) {
-      Optional<Widget> maybeMessageWidget = Stream.of(messageLinesWidget.getChildren())
-          // 486 = message line container width
-          // ignores various game messages and parent chat lines
-          .filter(widget -> widget.getWidth() != 486)
-          .filter(widget -> !widget.isHidden())
-          .filter(widget -> widget.getId() < WidgetInfo.CHATBOX_FIRST_MESSAGE.getId())
-          .filter(widget -> {
-            Rectangle bounds = widget.getBounds();
-            bounds.height += 2;
-
-            return bounds.contains(point);
-          }).findFirst();
-
-      if (!maybeMessageWidget.isPresent()) {
-        return null;
+  @Subscribe
+  public void onScriptPostFired(ScriptPostFired event) {
+    if (event.getScriptId() == ScriptID.BUILD_CHATBOX) {
+      layoutCache.invalidateLines();
+      messageLines.invalidate();
+      splitChatLines.invalidate();
+      hoverState.chatChanged();
+    }
+  }
+
+  @Subscribe
+  public void onChatMessage(ChatMessage event) {
+    // split chat isn't rebuilt by the chatbox script
+    splitChatLines.invalidate();
+    hoverState.chatChanged();
+  }
+
+  @Subscribe
+  public void onCanvasSizeChanged(CanvasSizeChanged event) {
+    layoutCache.invalidateLines();
+    messageLines.invalidate();
+    splitChatLines.invalidate();
+    hoverState.chatChanged();
+  }
+
+  private MatchSnapshot getKeywordsAtPoint(int x, int y, boolean recording) {
+    if (messageLinesWidget != null) {
+      updateIndexes(messageLinesWidget, messageLines, messageKeywords, InteractiveChatOverlay::isMessageLine, recording);
+
+      if (messageLines.containerContains(x, y)) {
+        return findKeywords(messageKeywords, x, y, recording);
       }
-      return maybeMessageWidget.get();
     }
     
-    boolean splitChatEnabled = client.getVarpValue(VARPLAYER_ENABLE_SPLIT_CHAT) > 0;
-    boolean splitChatHidden = client.getVarbitValue(VARBIT_HIDE_SPLIT_CHAT) > 0;
-    if (!splitChatEnabled || splitChatHidden) {
-      return null;
+    if (!isSplitChatVisible()) {
+      return MatchSnapshot.EMPTY;
     }
-    
-    splitChatWidget = getSplitChatWidget();
-    Optional<Widget> maybeSplitMessageWidget = Stream.of(splitChatWidget.getChildren())
-      .filter(widget -> widget.getWidth() != splitChatWidget.getWidth())
-      .filter(widget -> {
-        // same as above
-        Rectangle bounds = widget.getBounds();
-        bounds.y += 2;
-
-        return bounds.contains(point);
-      }).findFirst();
-
-    if (!maybeSplitMessageWidget.isPresent()) {
-      return null;
+
+    getSplitChatWidget();
+    if (splitChatWidget == null) {
+      return MatchSnapshot.EMPTY;
     }
-    return maybeSplitMessageWidget.get();
+
+    final int splitChatWidth = splitChatWidget.getWidth();
+    updateIndexes(splitChatWidget, splitChatLines, splitChatKeywords,
+        widget -> isSplitChatLine(widget, splitChatWidth), recording);
+
+    return findKeywords(splitChatKeywords, x, y, recording);
   }
 
-  private Widget getMessageLinesWidget() {
-    if (messageLinesWidget != null) {
-      return messageLinesWidget;
-    }
+  static boolean isMessageLine(Widget widget) {
+    // 486 = message line container width
+    // ignores various game messages and parent chat lines
+    return widget.getWidth() != 486
+        && !widget.isHidden()
+        && widget.getId() < WidgetInfo.CHATBOX_FIRST_MESSAGE.getId();
+  }
 
-    return client.getWidget(WidgetInfo.CHATBOX_MESSAGE_LINES);
+  static boolean isSplitChatLine(Widget widget, int splitChatWidth) {
+    return widget.getWidth() != splitChatWidth;
   }
 
-  private Widget getSplitChatWidget() {
-    if (splitChatWidget != null) {
-      return splitChatWidget;
+  private void updateIndexes(Widget container, ChatLineIndex lines, KeywordIndex keywords,
+      Predicate<Widget> include, boolean recording) {
+    long start = recording ? System.nanoTime() : 0;
+    if (!lines.isValid(container)) {
+      lines.rebuild(container, include);
+    }
+    if (recording) {
+      widgetLookupTime += System.nanoTime() - start;
     }
 
-    return client.getWidget(WidgetInfo.PRIVATE_CHAT_MESSAGE);
+    start = recording ? System.nanoTime() : 0;
+    if (!keywords.isValid(container, lines)) {
+      keywords.rebuild(container, lines, layoutCache);
+    }
+    if (recording) {
+      keywordIndexTime += System.nanoTime() - start;
+    }
   }
 
-  private List<Match> getBracketMatches(Widget messageWidget, String[] parts) {
-    final FontTypeFace font = messageWidget.getFont();
-    final Rectangle messageBounds = messageWidget.getBounds();
-    final int messageWidgetWidth = messageWidget.getWidth();
-
-    final int minY = (int) messageBounds.getMinY();
-    final int minX = (int) messageBounds.getMinX();
+  private MatchSnapshot findKeywords(KeywordIndex keywords, int x, int y, boolean recording) {
+    final long start = recording ? System.nanoTime() : 0;
+    final MatchSnapshot snapshot = keywords.termAt(x, y);
+    if (recording) {
+      hitTestTime += System.nanoTime() - start;
+    }
+    return snapshot;
+  }
 
-    int searchIndex = 0;
-    int incrementedWidth = 0;
-    int incrementedY = minY;
+  private Widget getMessageLinesWidget() {
+    if (messageLinesWidget != null) {
+      return messageLinesWidget;
+    }
 
-    final List<Match> matches = new ArrayList<Match>();
-    for (String part : parts) {
-      final boolean bracketed = part.startsWith(LEFT_DELIMITER) && part.endsWith(RIGHT_DELIMITER);
-      final int partWidth = font.getTextWidth(part);
+    return client.getWidget(WidgetInfo.CHATBOX_MESSAGE_LINES);
+  }
 
-      String term = "";
-      if (bracketed) {
-        term = part.replace(LEFT_DELIMITER, "").replace(RIGHT_DELIMITER, "");
-        searchIndex++;
-      }
+  private boolean isSplitChatVisible() {
+    if (splitChatVisible == null) {
+      splitChatVisible = client.getVarpValue(VARPLAYER_ENABLE_SPLIT_CHAT) > 0
+          && client.getVarbitValue(VARBIT_HIDE_SPLIT_CHAT) <= 0;
+    }
+    return splitChatVisible;
+  }
 
-      if (incrementedWidth + partWidth > messageWidgetWidth) {
-        for (String word : part.split("(?=\\s+)")) {
-          final int wordWidth = font.getTextWidth(word);
-          if (incrementedWidth + wordWidth <= messageWidgetWidth) {
-            if (bracketed) {
-              matches.add(new Match(searchIndex, term, minX + incrementedWidth, incrementedY, wordWidth));
-            }
-
-            incrementedWidth += wordWidth;
-            continue;
-          } else if (wordWidth > messageWidgetWidth) {
-            // keeps hitbox positioning correct
-            // when people spam keys like
-            // hi fffffffffffffffffffffffffffffffffff [hitbox]
-            // where a single word exceeds the widget width
-
-            // if it's not the first word in the message
-            // then it'll get put on its own line
-            if (incrementedWidth > 0) {
-              incrementedY += CHATLINE_HEIGHT;
-            }
-
-            if (bracketed) {
-              matches.add(new Match(searchIndex, term, minX + incrementedWidth, incrementedY, wordWidth));
-            }
-
-            incrementedY += CHATLINE_HEIGHT;
-            incrementedWidth = 0;
-            break;
-          } else {
-            // new line, trim and reset incremented width
-            final int trimmedWidth = font.getTextWidth(word.trim());
-            incrementedY += CHATLINE_HEIGHT;
-            incrementedWidth = trimmedWidth;
-
-            if (bracketed) {
-              matches.add(new Match(searchIndex, term, minX, incrementedY, trimmedWidth));
-            }
-          }
-        }
-      } else if (bracketed) {
-        matches.add(new Match(searchIndex, term, minX + incrementedWidth, incrementedY, partWidth));
-        incrementedWidth += partWidth;
-      } else {
-        incrementedWidth += partWidth;
-      }
+  // resolved once until the private chat interface is loaded again
+  private Widget getSplitChatWidget() {
+    if (!splitChatWidgetResolved) {
+      splitChatWidget = client.getWidget(WidgetInfo.PRIVATE_CHAT_MESSAGE);
+      splitChatWidgetResolved = true;
     }
 
-    return matches;
+    return splitChatWidget;
   }
-  
-  private List<Match> splitBracketMatches(List<Match> matches, Point point) {
-    List<Match> keywords = new ArrayList<Match>();
-    for (Match match : matches) {
-      if (!match.bounds.contains(point)) {
-        continue;
-      }
 
-      keywords = matches.stream().filter(keywordBounds -> keywordBounds.index == match.index)
-          .collect(Collectors.toList());
-      break;
+  private RenderSettings renderSettings() {
+    RenderSettings settings = renderSettings.get();
+    if (settings == null) {
+      settings = RenderSettings.from(config, client);
+      renderSettings.compareAndSet(null, settings);
     }
-
-    return keywords;
+    return settings;
   }
-  
-  private void drawHoverEffects(Graphics2D graphics, List<Match> keywords) {
-    if (config.onHover() == HoverMode.OFF) {
+
+  private void drawHoverEffects(Graphics2D graphics, MatchSnapshot keywords) {
+    final RenderSettings settings = renderSettings();
+    final HoverMode onHover = settings.getOnHover();
+    if (onHover == HoverMode.OFF) {
       return;
     }
-    
+
+    graphics.setPaint(settings.getHoverColor());
+
     final int wordCount = keywords.size();
     for (int i = 0; i < wordCount; i++) {
-      Match match = keywords.get(i);
-      Rectangle bounds = match.bounds;
+      final int boundsX = keywords.x(i);
+      final int boundsY = keywords.y(i);
+      final int boundsWidth = keywords.width(i);
+
+      if (onHover == HoverMode.HIGHLIGHT) {
+        final int width = settings.isWidenHighlight() ? boundsWidth + 1 : boundsWidth;
+        graphics.fillRect(boundsX, boundsY - 3, width, CHATLINE_HEIGHT);
+        continue;
+      }
 
       // width and x modifications make it look nicer.
-      int x = i == 0 ? bounds.x + 2 : bounds.x;
-      int width = wordCount > 1 && (i == 0 || i == wordCount - 1) ? bounds.width - 2 : bounds.width - 4;
+      int x = i == 0 ? boundsX + 2 : boundsX;
+      int width = wordCount > 1 && (i == 0 || i == wordCount - 1) ? boundsWidth - 2 : boundsWidth - 4;
 
       // -4 correction because of earlier repositioning
-      final Rectangle hoverEffect = new Rectangle(x, bounds.y + CHATLINE_HEIGHT - 4, width, 1);
-
-      if (config.onHover() == HoverMode.HIGHLIGHT) {
-        hoverEffect.x = bounds.x;
-        hoverEffect.y = bounds.y - 3;
-        hoverEffect.height = CHATLINE_HEIGHT;
-        hoverEffect.width = bounds.width;
-
-        if (GameClientLayout.from(client) != GameClientLayout.FIXED && client.getVarbitValue(Varbits.TRANSPARENT_CHATBOX.getId()) > 0) {
-          hoverEffect.width += 1;
-        }
-      }
-
-      graphics.setPaint(config.hoverColor());
-      graphics.fill(hoverEffect);
+      graphics.fillRect(x, boundsY + CHATLINE_HEIGHT - 4, width, 1);
     }
   }
-}
+}
\ No newline at end of file
@@ -28,42 +28,99 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package com.interactivechat;
 
 import java.awt.event.MouseEvent;
-import java.util.List;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import javax.swing.SwingUtilities;
 
-import net.runelite.api.Client;
-import net.runelite.api.Point;
 import net.runelite.client.input.MouseAdapter;
 
+import okhttp3.HttpUrl;
+
 @Singleton
 public class InteractiveChatOverlayMouseListener extends MouseAdapter {
-  private final Client client;
   private MatchManager matchManager;
+  private final HoverState hoverState;
+  private final PluginMetrics metrics;
+  private final TitleDictionary titles;
+  private final LinkDispatcher links;
 
   @Inject
-  private InteractiveChatOverlayMouseListener(Client client, MatchManager matchManager)
+  private InteractiveChatOverlayMouseListener(MatchManager matchManager, HoverState hoverState, PluginMetrics metrics, TitleDictionary titles, LinkDispatcher links)
   {
-    this.client = client;
     this.matchManager = matchManager;
+    this.hoverState = hoverState;
+    this.metrics = metrics;
+    this.titles = titles;
+    this.links = links;
+  }
+
+  @Override
+  public MouseEvent mouseMoved(MouseEvent e) {
+    hoverState.mouseMoved(e.getX(), e.getY());
+    return e;
+  }
+
+  @Override
+  public MouseEvent mouseDragged(MouseEvent e) {
+    hoverState.mouseMoved(e.getX(), e.getY());
+    return e;
+  }
+
+  @Override
+  public MouseEvent mouseExited(MouseEvent e) {
+    hoverState.mouseExited();
+    return e;
   }
 
   @Override
   public MouseEvent mousePressed(MouseEvent e) {
-    final List<Match> matches = matchManager.getMatches();
+    final MatchSnapshot matches = matchManager.getSnapshot();
     if (!SwingUtilities.isLeftMouseButton(e) || matches.isEmpty()) {
       return e;
     }
 
-    Point mouse = client.getMouseCanvasPosition();
-    for (Match match : matches) {
-      if (match.bounds.contains(mouse.getX(), mouse.getY())) {
-        return match.onClick(e);
+    final boolean recording = metrics.isRecording();
+    final long start = recording ? System.nanoTime() : 0;
+    // in canvas coordinates, like the moves the hover follows
+    final int segment = matches.segmentAt(e.getX(), e.getY());
+    if (recording) {
+      metrics.click(System.nanoTime() - start, segment != -1);
+    }
+
+    if (segment != -1) {
+      final String term = matches.term(segment);
+      final LinkProvider provider = LinkProvider.select(term, e.getModifiersEx());
+      final HttpUrl url;
+      if (provider != null) {
+        url = provider.url(provider.stripPrefix(term));
+      } else {
+        final String title = title(term, matches.title(segment), matches.titleGeneration(segment));
+        url = title != null ? LinkProvider.WIKI_PAGE.url(title) : LinkProvider.WIKI_SEARCH.url(term);
       }
+
+      links.open(url, e.getWhen());
+      e.consume();
     }
 
     return e;
   }
+
+  /**
+   * Returns the title of the page {@code term} opens, or null to search for it.
+   */
+  private String title(String term, int title, int titleGeneration) {
+    final TitlePrefixIndex index = titles.index();
+    final TitleCorrector corrector = titles.corrector();
+    if (index != null && index.generation() == titleGeneration) {
+      if (title == SpanBuffer.NO_TITLE || SpanBuffer.isCorrected(title) && corrector == null) {
+        return null;
+      } else if (title != SpanBuffer.UNRESOLVED) {
+        return index.title(SpanBuffer.position(title));
+      }
+    }
+
+    // not resolved when it was parsed, or against titles since reloaded
+    return corrector == null ? null : corrector.correct(term);
+  }
 }
\ No newline at end of file
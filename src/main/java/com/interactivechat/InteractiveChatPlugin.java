@@ -29,43 +29,64 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package com.interactivechat;
 
 import com.google.inject.Provides;
-import java.util.regex.Pattern;
 import javax.inject.Inject;
 import net.runelite.api.ChatMessageType;
 import net.runelite.api.Client;
-import net.runelite.api.MessageNode;
+import net.runelite.api.Point;
+import net.runelite.api.ScriptID;
+import net.runelite.api.VarClientStr;
 import net.runelite.api.events.ChatMessage;
-import net.runelite.client.chat.ChatColorType;
-import net.runelite.client.chat.ChatMessageBuilder;
-import net.runelite.client.chat.ChatMessageManager;
+import net.runelite.api.events.GameStateChanged;
+import net.runelite.api.events.ScriptPostFired;
+import net.runelite.api.events.VarClientStrChanged;
+import net.runelite.client.callback.ClientThread;
 import net.runelite.client.config.ConfigManager;
 import net.runelite.client.eventbus.EventBus;
 import net.runelite.client.eventbus.Subscribe;
+import net.runelite.client.events.ConfigChanged;
+import net.runelite.client.input.KeyManager;
 import net.runelite.client.input.MouseManager;
 import net.runelite.client.plugins.Plugin;
 import net.runelite.client.plugins.PluginDescriptor;
 import net.runelite.client.ui.overlay.OverlayManager;
-import net.runelite.client.util.Text;
 
 @PluginDescriptor(
     name = "Interactive Chat",
     description = "Lets users send interactive chat messages",
     tags = {"interactive", "chat", "wiki", "search"})
 public class InteractiveChatPlugin extends Plugin {
-  static final Pattern BRACKETED_PATTERN = InteractiveChat.BRACKETED_PATTERN;
-  static final String LEFT_DELIMITER = InteractiveChat.LEFT_DELIMITER;
-  static final String RIGHT_DELIMITER = InteractiveChat.RIGHT_DELIMITER;
-
   
-  @Inject private Client client;
   @Inject private OverlayManager overlayManager;
-  @Inject private ChatMessageManager chatMessageManager;
   @Inject private MouseManager mouseManager;
+  @Inject private KeyManager keyManager;
   @Inject private EventBus eventBus;
+  @Inject private Client client;
+  @Inject private ClientThread clientThread;
   
   @Inject private InteractiveChatConfig config;
   @Inject private InteractiveChatOverlay overlay;
   @Inject private InteractiveChatOverlayMouseListener interactiveChatOverlayMouseListener;
+  @Inject private MessageLayoutCache layoutCache;
+  @Inject private MessageSpanStore spanStore;
+  @Inject private PluginMetrics metrics;
+  @Inject private ChatRefreshBatcher refreshBatcher;
+  @Inject private ChatParsePipeline parsePipeline;
+  @Inject private WikiPreviewCache wikiPreviews;
+  @Inject private TitleDictionary titles;
+  @Inject private TitleCompleter completer;
+  @Inject private TitleCompleterOverlay completerOverlay;
+  @Inject private TitleCompleterKeyListener completerKeyListener;
+  @Inject private LinkedLineCounter linkedLines;
+  @Inject private HoverState hoverState;
+
+  // the autocomplete option as last applied, read on the client thread
+  private volatile boolean completing;
+  // whether the plugin is between startUp and shutDown, as seen by the
+  // client thread, whether the overlay and mouse listener are attached, and
+  // whether the completer overlay is. Client thread only
+  private boolean started;
+  private boolean attached;
+  private boolean suggesting;
 
   @Provides
   InteractiveChatConfig provideConfig(ConfigManager configManager) {
@@ -74,17 +95,141 @@ public class InteractiveChatPlugin extends Plugin {
 
   @Override
   protected void startUp() throws Exception {
-    overlayManager.add(overlay);
+    metrics.setRecording(config.flightRecorderEvents());
+    updateTitles();
     eventBus.register(overlay);
-    mouseManager.registerMouseListener(interactiveChatOverlayMouseListener);
+    eventBus.register(completerOverlay);
+    parsePipeline.start();
+    clientThread.invokeLater(() -> {
+      started = true;
+      updateAttached();
+    });
   }
 
   @Override
   protected void shutDown() throws Exception {
+    parsePipeline.stop();
     overlay.unsetContainerWidgets();
-    overlayManager.remove(overlay);
+    wikiPreviews.clear();
+    // queued after any attach from startUp or a config change, so it can't
+    // be undone by one. The caches are client thread only, and a parsed batch
+    // still queued behind this finds the pipeline stopped
+    clientThread.invoke(() -> {
+      started = false;
+      setAttached(false);
+      layoutCache.clear();
+      spanStore.clear();
+      refreshBatcher.clear();
+    });
     eventBus.unregister(overlay);
-    mouseManager.unregisterMouseListener(interactiveChatOverlayMouseListener);
+    eventBus.unregister(completerOverlay);
+    metrics.setRecording(false);
+    setCompleting(false);
+    titles.unload();
+  }
+
+  @Subscribe
+  public void onConfigChanged(ConfigChanged event) {
+    if (event.getGroup().equals(InteractiveChat.CONFIG_GROUP)) {
+      metrics.setRecording(config.flightRecorderEvents());
+      updateTitles();
+      clientThread.invokeLater(this::updateAttached);
+    }
+  }
+
+  @Subscribe
+  public void onScriptPostFired(ScriptPostFired event) {
+    // new and rewritten messages, scrolled out history and a cleared chat all rebuild the chatbox
+    if (event.getScriptId() == ScriptID.BUILD_CHATBOX) {
+      updateAttached();
+    }
+  }
+
+  @Subscribe
+  public void onGameStateChanged(GameStateChanged event) {
+    switch (event.getGameState()) {
+      case LOGIN_SCREEN:
+      case HOPPING:
+        setAttached(false);
+        break;
+      default:
+        break;
+    }
+  }
+
+  /**
+   * Attaches the overlay and mouse listener only while a chat line has a
+   * term to hover. The rest of the time the plugin does no work per frame.
+   */
+  private void updateAttached() {
+    setAttached(started && linkedLines.count() > 0);
+  }
+
+  private void setAttached(boolean attached) {
+    if (attached == this.attached) {
+      return;
+    }
+
+    this.attached = attached;
+    if (attached) {
+      // the mouse wasn't followed while detached
+      final Point mouse = client.getMouseCanvasPosition();
+      hoverState.mouseMoved(mouse.getX(), mouse.getY());
+      hoverState.chatChanged();
+      overlayManager.add(overlay);
+      mouseManager.registerMouseListener(interactiveChatOverlayMouseListener);
+    } else {
+      overlayManager.remove(overlay);
+      mouseManager.unregisterMouseListener(interactiveChatOverlayMouseListener);
+      overlay.clearHover();
+    }
+  }
+
+  private void updateTitles() {
+    titles.update(config.linkTitles(), config.autocomplete(), config.correctTerms());
+    setCompleting(config.autocomplete());
+  }
+
+  private void setCompleting(boolean completing) {
+    if (completing == this.completing) {
+      return;
+    }
+
+    this.completing = completing;
+    if (completing) {
+      keyManager.registerKeyListener(completerKeyListener);
+    } else {
+      keyManager.unregisterKeyListener(completerKeyListener);
+      clientThread.invoke(() -> {
+        completer.clear();
+        setSuggesting(false);
+      });
+    }
+  }
+
+  @Subscribe
+  public void onVarClientStrChanged(VarClientStrChanged event) {
+    if (completing && event.getIndex() == VarClientStr.CHATBOX_TYPED_TEXT.getIndex()) {
+      completer.update();
+      setSuggesting(completer.isTyping());
+    }
+  }
+
+  /**
+   * Attaches the completer overlay only while a term is being typed, which
+   * is also the only time the dictionary's index is needed for it.
+   */
+  private void setSuggesting(boolean suggesting) {
+    if (suggesting == this.suggesting) {
+      return;
+    }
+
+    this.suggesting = suggesting;
+    if (suggesting) {
+      overlayManager.add(completerOverlay);
+    } else {
+      overlayManager.remove(completerOverlay);
+    }
   }
 
   @Subscribe
@@ -102,28 +247,6 @@ public class InteractiveChatPlugin extends Plugin {
         return;
     }
 
-    final String message = Text.removeFormattingTags(chatMessage.getMessage());
-    final String[] parts = BRACKETED_PATTERN.split(message);
-    if (parts.length == 1 && !message.startsWith(LEFT_DELIMITER)) {
-      return;
-    }
-
-    ChatMessageBuilder builder = new ChatMessageBuilder();
-    for (String part : parts) {
-      if (!part.startsWith(LEFT_DELIMITER) || !part.endsWith(RIGHT_DELIMITER)) {
-        builder.append(ChatColorType.NORMAL);
-        builder.append(part);
-        continue;
-      }
-
-      final String searchTerm = part.substring(1, part.length() - 1);
-      builder.append(config.textColor(), String.format("[%s]", searchTerm.trim().replaceAll(" +", " ")));
-    }
-
-    final String finalMessage = builder.build().replaceAll("<lt>", "<").replaceAll("<gt>", ">");
-    final MessageNode messageNode = chatMessage.getMessageNode();
-    messageNode.setRuneLiteFormatMessage(finalMessage);
-    chatMessageManager.update(messageNode);
-    client.refreshChat();
+    parsePipeline.submit(chatMessage.getMessageNode(), chatMessage.getMessage(), config.textColor());
   }
-}
+}
\ No newline at end of file
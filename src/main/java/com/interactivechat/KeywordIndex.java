@@ -0,0 +1,320 @@
+/*
+
+Copyright (c) 2021, Richard Cane
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package com.interactivechat;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.runelite.api.widgets.Widget;
+
+/**
+ * The keyword hitboxes of every indexed line of a chat container. Segments
+ * are bucketed into rows by their top edge and sorted by their left edge
+ * within a row, so the term under a point is found with two binary searches.
+ * Every segment of a term shares a group, so a term wrapped over several
+ * lines comes back whole.
+ *
+ * Like {@link ChatLineIndex}, bounds are those of when the lines were indexed
+ * and scrolling only shifts the lookup. A clipped index only covers the lines
+ * within one container height of the visible area, and is rebuilt once the
+ * container scrolls past them. Each line's hitboxes are kept across those
+ * rebuilds until the lines are indexed again or the line's layout changes,
+ * so a rebuild only lays out and translates the lines scrolled into range
+ * and re-sorts the rows.
+ */
+class KeywordIndex {
+  private final boolean clipToContainer;
+
+  private Widget container;
+  private int lineGeneration;
+  // the lines' scroll position when they were indexed
+  private int scrollY;
+  private int coveredTop;
+  private int coveredBottom;
+  private final Rectangle containerBounds = new Rectangle();
+
+  // by line, the layout each line's hitboxes were translated from, and those
+  // hitboxes in canvas bounds as of when the lines were indexed
+  private int cachedGeneration;
+  private final List<List<Match>> lineLayouts = new ArrayList<>();
+  private final List<List<Match>> lineMatches = new ArrayList<>();
+
+  // the covered lines' hitboxes, in layout order so a term's segments are adjacent
+  private final List<Match> matches = new ArrayList<>();
+  private int groupCount;
+  private int[] groupStart = new int[16];
+  private int[] group = new int[0];
+  // built on first hover and kept until the index is rebuilt or the container scrolls
+  private MatchSnapshot[] snapshots = new MatchSnapshot[0];
+  private int[] snapshotShift = new int[0];
+
+  // matches sorted into rows by top edge, then by left edge within a row
+  private int rowCount;
+  private int maxHeight;
+  private int[] rowTop = new int[0];
+  private int[] rowBottom = new int[0];
+  private int[] rowStart = new int[1];
+  private int[] sorted = new int[0];
+  private int[] left = new int[0];
+  private int[] right = new int[0];
+
+  /**
+   * @param clipToContainer only index the lines near the visible area of a
+   *                        scrolling container
+   */
+  KeywordIndex(boolean clipToContainer) {
+    this.clipToContainer = clipToContainer;
+  }
+
+  boolean isValid(Widget container, ChatLineIndex lines) {
+    if (this.container != container || lineGeneration != lines.generation()) {
+      return false;
+    }
+
+    if (!clipToContainer) {
+      return true;
+    }
+
+    final int shift = container.getScrollY() - scrollY;
+    return containerBounds.y + shift >= coveredTop
+        && containerBounds.y + containerBounds.height + shift <= coveredBottom;
+  }
+
+  void invalidate() {
+    container = null;
+  }
+
+  /**
+   * Lays out every line of {@code lines} that's close enough to be scrolled
+   * into view and indexes its keywords. {@code lines} must be valid for
+   * {@code container}.
+   */
+  void rebuild(Widget container, ChatLineIndex lines, MessageLayoutCache layoutCache) {
+    containerBounds.setBounds(container.getBounds());
+
+    // the lines have moved up by this much since they were indexed
+    final int lineShift = container.getScrollY() - lines.scrollY();
+    coveredTop = Integer.MIN_VALUE;
+    coveredBottom = Integer.MAX_VALUE;
+    if (clipToContainer) {
+      coveredTop = containerBounds.y + lineShift - containerBounds.height;
+      coveredBottom = containerBounds.y + lineShift + containerBounds.height * 2;
+    }
+
+    final int lineCount = lines.size();
+    if (cachedGeneration != lines.generation() || lineLayouts.size() != lineCount) {
+      cachedGeneration = lines.generation();
+      lineLayouts.clear();
+      lineMatches.clear();
+      for (int i = 0; i < lineCount; i++) {
+        lineLayouts.add(null);
+        lineMatches.add(null);
+      }
+    }
+
+    matches.clear();
+    groupCount = 0;
+    for (int i = 0; i < lineCount; i++) {
+      if (lines.bottom(i) <= coveredTop || lines.top(i) >= coveredBottom) {
+        continue;
+      }
+
+      final Widget line = lines.line(i);
+      final List<Match> layout = layoutCache.layout(line);
+      if (layout.isEmpty()) {
+        continue;
+      }
+
+      List<Match> translated = lineMatches.get(i);
+      if (translated == null || lineLayouts.get(i) != layout) {
+        final Rectangle lineBounds = line.getBounds();
+        translated = new ArrayList<>(layout.size());
+        for (Match match : layout) {
+          translated.add(match.translate(lineBounds.x, lineBounds.y + lineShift));
+        }
+        lineLayouts.set(i, layout);
+        lineMatches.set(i, translated);
+      }
+
+      int previous = -1;
+      for (Match match : translated) {
+        if (match.index != previous) {
+          if (groupCount + 2 > groupStart.length) {
+            groupStart = Arrays.copyOf(groupStart, groupStart.length * 2);
+          }
+          groupStart[groupCount++] = matches.size();
+          previous = match.index;
+        }
+        matches.add(match);
+      }
+    }
+    groupStart[groupCount] = matches.size();
+
+    if (snapshots.length < groupCount) {
+      snapshots = new MatchSnapshot[groupStart.length];
+      snapshotShift = new int[groupStart.length];
+    } else {
+      Arrays.fill(snapshots, null);
+    }
+
+    sortIntoRows();
+
+    this.container = container;
+    this.scrollY = lines.scrollY();
+    this.lineGeneration = lines.generation();
+  }
+
+  private void sortIntoRows() {
+    final int size = matches.size();
+    ensureCapacity(size);
+
+    for (int g = 0; g < groupCount; g++) {
+      Arrays.fill(group, groupStart[g], groupStart[g + 1], g);
+    }
+
+    // sort by top edge, ties broken by layout order
+    final long[] keys = new long[size];
+    for (int i = 0; i < size; i++) {
+      keys[i] = ((long) matches.get(i).bounds.y << 32) | i;
+    }
+    Arrays.sort(keys);
+
+    rowCount = 0;
+    maxHeight = 0;
+    for (int i = 0; i < size; i++) {
+      final int match = (int) keys[i];
+      final Rectangle bounds = matches.get(match).bounds;
+
+      if (rowCount == 0 || bounds.y != rowTop[rowCount - 1]) {
+        rowTop[rowCount] = bounds.y;
+        rowBottom[rowCount] = bounds.y;
+        rowStart[rowCount] = i;
+        rowCount++;
+      }
+      rowBottom[rowCount - 1] = Math.max(rowBottom[rowCount - 1], bounds.y + bounds.height);
+      maxHeight = Math.max(maxHeight, bounds.height);
+
+      // rows are short and usually already in order, so insertion sort by left edge
+      int j = i;
+      while (j > rowStart[rowCount - 1] && left[j - 1] > bounds.x) {
+        sorted[j] = sorted[j - 1];
+        left[j] = left[j - 1];
+        right[j] = right[j - 1];
+        j--;
+      }
+      sorted[j] = match;
+      left[j] = bounds.x;
+      right[j] = bounds.x + bounds.width;
+    }
+    rowStart[rowCount] = size;
+  }
+
+  /**
+   * Returns every segment of the term containing the given canvas point, or
+   * {@link MatchSnapshot#EMPTY}.
+   */
+  MatchSnapshot termAt(int x, int y) {
+    if (container == null || rowCount == 0) {
+      return MatchSnapshot.EMPTY;
+    }
+
+    // segments move up as the container scrolls down
+    final int shift = container.getScrollY() - scrollY;
+    final int queryY = y + shift;
+
+    int low = 0;
+    int high = rowCount - 1;
+    int last = -1;
+    while (low <= high) {
+      final int mid = (low + high) >>> 1;
+      if (rowTop[mid] <= queryY) {
+        last = mid;
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+
+    for (int row = last; row >= 0 && rowTop[row] > queryY - maxHeight; row--) {
+      if (queryY >= rowBottom[row]) {
+        continue;
+      }
+
+      final int segment = segmentAt(row, x);
+      if (segment != -1) {
+        return snapshot(group[sorted[segment]], shift);
+      }
+    }
+
+    return MatchSnapshot.EMPTY;
+  }
+
+  // moving between terms publishes the same snapshots again instead of new ones
+  private MatchSnapshot snapshot(int g, int shift) {
+    MatchSnapshot snapshot = snapshots[g];
+    if (snapshot == null || snapshotShift[g] != shift) {
+      snapshot = MatchSnapshot.of(matches.subList(groupStart[g], groupStart[g + 1]), -shift);
+      snapshots[g] = snapshot;
+      snapshotShift[g] = shift;
+    }
+    return snapshot;
+  }
+
+  private int segmentAt(int row, int x) {
+    int low = rowStart[row];
+    int high = rowStart[row + 1] - 1;
+    int last = -1;
+    while (low <= high) {
+      final int mid = (low + high) >>> 1;
+      if (left[mid] <= x) {
+        last = mid;
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+
+    return last != -1 && x < right[last] ? last : -1;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (group.length >= capacity) {
+      return;
+    }
+
+    group = new int[capacity];
+    rowTop = new int[capacity];
+    rowBottom = new int[capacity];
+    rowStart = new int[capacity + 1];
+    sorted = new int[capacity];
+    left = new int[capacity];
+    right = new int[capacity];
+  }
+}
@@ -0,0 +1,89 @@
+/*
+
+Copyright (c) 2021, Richard Cane
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package com.interactivechat;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import net.runelite.client.util.LinkBrowser;
+
+import okhttp3.HttpUrl;
+
+/**
+ * Opens clicked links off the input thread. Launching the desktop browser
+ * can take a while, so links are handed to a single worker thread that exits
+ * once it has been idle for a bit. Clicking the same link again within the
+ * double click interval doesn't open it twice.
+ */
+@Singleton
+class LinkDispatcher {
+  static final long DEBOUNCE_MILLIS = 500;
+
+  private final Browser browser;
+  private final Executor executor;
+
+  // input thread only
+  private String lastLink;
+  private long lastOpened;
+
+  @Inject
+  LinkDispatcher() {
+    this(LinkBrowser::browse, new ThreadPoolExecutor(0, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+      final Thread thread = new Thread(runnable, "interactive-chat-links");
+      thread.setDaemon(true);
+      return thread;
+    }));
+  }
+
+  LinkDispatcher(Browser browser, Executor executor) {
+    this.browser = browser;
+    this.executor = executor;
+  }
+
+  /**
+   * Queues {@code url} to be opened, unless it's a repeat of the link opened
+   * just before. {@code when} is the click's timestamp in milliseconds.
+   * Returns whether it was queued.
+   */
+  boolean open(HttpUrl url, long when) {
+    final String link = url.toString();
+    if (link.equals(lastLink) && when - lastOpened < DEBOUNCE_MILLIS) {
+      return false;
+    }
+
+    lastLink = link;
+    lastOpened = when;
+    executor.execute(() -> browser.browse(link));
+    return true;
+  }
+}
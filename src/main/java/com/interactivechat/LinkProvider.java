@@ -0,0 +1,113 @@
+/*
+
+Copyright (c) 2021, Richard Cane
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package com.interactivechat;
+
+import java.awt.event.InputEvent;
+
+import okhttp3.HttpUrl;
+
+/**
+ * Where a clicked term can lead. By default that's the term's wiki page when
+ * its title is known, or else a wiki search. The others are picked with a
+ * prefix inside the brackets, like {@code [ge:abyssal whip]}, or by holding a
+ * modifier key while clicking.
+ *
+ * Each provider parses its base URL once and only adds the term to it.
+ */
+enum LinkProvider {
+  WIKI_SEARCH("wiki:", InputEvent.ALT_DOWN_MASK, LinkProvider.WIKI + "/") {
+    @Override
+    HttpUrl url(String term) {
+      return base.newBuilder().addQueryParameter("search", term).build();
+    }
+  },
+  WIKI_PAGE(null, 0, LinkProvider.WIKI + "/w/") {
+    @Override
+    HttpUrl url(String title) {
+      return base.newBuilder().addPathSegment(title.replace(' ', '_')).build();
+    }
+  },
+  GRAND_EXCHANGE("ge:", InputEvent.SHIFT_DOWN_MASK, "https://secure.runescape.com/m=itemdb_oldschool/results") {
+    @Override
+    HttpUrl url(String term) {
+      return base.newBuilder().addQueryParameter("query", term).build();
+    }
+  },
+  HISCORES("hs:", InputEvent.CTRL_DOWN_MASK, "https://secure.runescape.com/m=hiscore_oldschool/hiscorepersonal") {
+    @Override
+    HttpUrl url(String term) {
+      return base.newBuilder().addQueryParameter("user1", term).build();
+    }
+  };
+
+  // qualified above, since enum constants come before it
+  private static final String WIKI = "https://oldschool.runescape.wiki";
+  static final HttpUrl WIKI_BASE = HttpUrl.parse(WIKI);
+
+  private static final LinkProvider[] PROVIDERS = values();
+
+  private final String prefix;
+  private final int modifier;
+  final HttpUrl base;
+
+  LinkProvider(String prefix, int modifier, String base) {
+    this.prefix = prefix;
+    this.modifier = modifier;
+    this.base = HttpUrl.parse(base);
+  }
+
+  abstract HttpUrl url(String term);
+
+  /**
+   * Returns the provider named by the term's prefix or, failing that, by the
+   * held modifier keys. Returns null if neither picks one.
+   */
+  static LinkProvider select(String term, int modifiersEx) {
+    for (LinkProvider provider : PROVIDERS) {
+      if (provider.hasPrefix(term)) {
+        return provider;
+      }
+    }
+
+    for (LinkProvider provider : PROVIDERS) {
+      if (provider.modifier != 0 && (modifiersEx & provider.modifier) != 0) {
+        return provider;
+      }
+    }
+
+    return null;
+  }
+
+  String stripPrefix(String term) {
+    return hasPrefix(term) ? term.substring(prefix.length()).trim() : term;
+  }
+
+  private boolean hasPrefix(String term) {
+    return prefix != null && term.regionMatches(true, 0, prefix, 0, prefix.length());
+  }
+}
@@ -0,0 +1,96 @@
+/*
+
+Copyright (c) 2021, Richard Cane
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package com.interactivechat;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import net.runelite.api.Client;
+import net.runelite.api.widgets.Widget;
+import net.runelite.api.widgets.WidgetInfo;
+import net.runelite.client.util.Text;
+
+/**
+ * Counts the chat lines that have a term to hover, in the chatbox and in
+ * split chat. Runs on every chatbox rebuild over the whole history, so lines
+ * are neither parsed nor laid out: a message the {@link ChatParsePipeline}
+ * has parsed is looked up in the {@link MessageSpanStore}, and any other line
+ * counts if it has a bracket. Client thread only.
+ */
+@Singleton
+class LinkedLineCounter {
+  private final Client client;
+  private final MessageSpanStore spanStore;
+
+  @Inject
+  LinkedLineCounter(Client client, MessageSpanStore spanStore) {
+    this.client = client;
+    this.spanStore = spanStore;
+  }
+
+  int count() {
+    int count = 0;
+
+    final Widget messageLines = client.getWidget(WidgetInfo.CHATBOX_MESSAGE_LINES);
+    if (messageLines != null) {
+      final Widget[] lines = messageLines.getChildren();
+      if (lines != null) {
+        for (Widget line : lines) {
+          if (line != null && InteractiveChatOverlay.isMessageLine(line) && isLinked(line)) {
+            count++;
+          }
+        }
+      }
+    }
+
+    final Widget splitChat = client.getWidget(WidgetInfo.PRIVATE_CHAT_MESSAGE);
+    if (splitChat != null) {
+      final Widget[] lines = splitChat.getChildren();
+      if (lines != null) {
+        final int splitChatWidth = splitChat.getWidth();
+        for (Widget line : lines) {
+          if (line != null && InteractiveChatOverlay.isSplitChatLine(line, splitChatWidth) && isLinked(line)) {
+            count++;
+          }
+        }
+      }
+    }
+
+    return count;
+  }
+
+  private boolean isLinked(Widget line) {
+    final String text = line.getText();
+    if (text == null) {
+      return false;
+    }
+
+    final SpanBuffer spans = spanStore.find(Text.removeFormattingTags(text));
+    return spans != null ? spans.keywordCount() > 0 : text.indexOf('[') >= 0;
+  }
+}
@@ -28,29 +28,36 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package com.interactivechat;
 
 import java.awt.Rectangle;
-import java.awt.event.MouseEvent;
-
-import net.runelite.client.util.LinkBrowser;
-
-import okhttp3.HttpUrl;
 
 public class Match {
-    static final HttpUrl WIKI_BASE = HttpUrl.parse("https://oldschool.runescape.wiki");
-    
     final int index;
     final String term;
+    // position in the title index, see SpanBuffer#title
+    final int title;
+    final int titleGeneration;
     final Rectangle bounds;
 
     Match(int index, String term, int x, int y, int width) {
+      this(index, term, SpanBuffer.UNRESOLVED, 0, x, y, width);
+    }
+
+    Match(int index, String term, int title, int titleGeneration, int x, int y, int width) {
       this.bounds = new Rectangle(x, y + 4, width, InteractiveChat.CHATLINE_HEIGHT);
       this.index = index;
       this.term = term;
+      this.title = title;
+      this.titleGeneration = titleGeneration;
     }
 
-    public MouseEvent onClick(MouseEvent e) {
-      LinkBrowser.browse(WIKI_BASE.newBuilder().addQueryParameter("search", term).build().toString());
+    private Match(int index, String term, int title, int titleGeneration, Rectangle bounds) {
+      this.bounds = bounds;
+      this.index = index;
+      this.term = term;
+      this.title = title;
+      this.titleGeneration = titleGeneration;
+    }
 
-      e.consume();
-      return e;
+    Match translate(int x, int y) {
+      return new Match(index, term, title, titleGeneration, new Rectangle(bounds.x + x, bounds.y + y, bounds.width, bounds.height));
     }
-  }
\ No newline at end of file
+  }
@@ -28,34 +28,31 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package com.interactivechat;
 
 import java.awt.Point;
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
 
 import javax.inject.Singleton;
 
 import lombok.AccessLevel;
 import lombok.Getter;
 
+/**
+ * Holds the keyword hitboxes of the currently hovered term. The client thread
+ * publishes a new {@link MatchSnapshot} whenever the hovered term changes,
+ * and readers on any thread always see one complete snapshot.
+ */
 @Singleton
 public class MatchManager {
   @Getter(AccessLevel.PACKAGE)
-   private List<Match> matches = new CopyOnWriteArrayList<>();
+  private volatile MatchSnapshot snapshot = MatchSnapshot.EMPTY;
 
-  public void add(Match match) {
-    matches.add(match);
+  void publish(MatchSnapshot snapshot) {
+    this.snapshot = snapshot;
   }
 
   public void clear() {
-    matches.clear();
+    snapshot = MatchSnapshot.EMPTY;
   }
 
   public boolean pointInBounds(Point point) {
-    for (Match match : matches) {
-      if (match.bounds.contains(point)) {
-        return true;
-      }
-    }
-
-    return false;
+    return snapshot.segmentAt(point.x, point.y) != -1;
   }
 }
\ No newline at end of file
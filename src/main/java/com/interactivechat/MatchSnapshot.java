@@ -0,0 +1,148 @@
+/*
+
+Copyright (c) 2021, Richard Cane
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package com.interactivechat;
+
+import java.util.List;
+
+/**
+ * An immutable set of keyword hitboxes packed into flat arrays. A snapshot is
+ * never modified after it is built, so it can be handed from the client
+ * thread to the input thread with a single volatile write.
+ */
+final class MatchSnapshot {
+  static final MatchSnapshot EMPTY = new MatchSnapshot(new int[0], new String[0], new int[0], new int[0], new int[0]);
+
+  private static final int STRIDE = 4;
+
+  private final int[] termIds;
+  private final String[] terms;
+  private final int[] titles;
+  private final int[] titleGenerations;
+  private final int[] bounds;
+
+  private MatchSnapshot(int[] termIds, String[] terms, int[] titles, int[] titleGenerations, int[] bounds) {
+    this.termIds = termIds;
+    this.terms = terms;
+    this.titles = titles;
+    this.titleGenerations = titleGenerations;
+    this.bounds = bounds;
+  }
+
+  static MatchSnapshot of(List<Match> matches) {
+    return of(matches, 0);
+  }
+
+  /**
+   * Builds a snapshot of the given matches, moved down by {@code offsetY}.
+   */
+  static MatchSnapshot of(List<Match> matches, int offsetY) {
+    final int size = matches.size();
+    if (size == 0) {
+      return EMPTY;
+    }
+
+    final int[] termIds = new int[size];
+    final String[] terms = new String[size];
+    final int[] titles = new int[size];
+    final int[] titleGenerations = new int[size];
+    final int[] bounds = new int[size * STRIDE];
+    for (int i = 0; i < size; i++) {
+      final Match match = matches.get(i);
+      termIds[i] = match.index;
+      terms[i] = match.term;
+      titles[i] = match.title;
+      titleGenerations[i] = match.titleGeneration;
+      bounds[i * STRIDE] = match.bounds.x;
+      bounds[i * STRIDE + 1] = match.bounds.y + offsetY;
+      bounds[i * STRIDE + 2] = match.bounds.width;
+      bounds[i * STRIDE + 3] = match.bounds.height;
+    }
+
+    return new MatchSnapshot(termIds, terms, titles, titleGenerations, bounds);
+  }
+
+  int size() {
+    return termIds.length;
+  }
+
+  boolean isEmpty() {
+    return termIds.length == 0;
+  }
+
+  int termId(int segment) {
+    return termIds[segment];
+  }
+
+  String term(int segment) {
+    return terms[segment];
+  }
+
+  /**
+   * The segment's position in the title index, see {@link SpanBuffer#title}.
+   */
+  int title(int segment) {
+    return titles[segment];
+  }
+
+  /**
+   * The generation of the title index that {@link #title(int)} is from.
+   */
+  int titleGeneration(int segment) {
+    return titleGenerations[segment];
+  }
+
+  int x(int segment) {
+    return bounds[segment * STRIDE];
+  }
+
+  int y(int segment) {
+    return bounds[segment * STRIDE + 1];
+  }
+
+  int width(int segment) {
+    return bounds[segment * STRIDE + 2];
+  }
+
+  int height(int segment) {
+    return bounds[segment * STRIDE + 3];
+  }
+
+  /**
+   * Returns the segment containing the given point, or -1.
+   */
+  int segmentAt(int x, int y) {
+    for (int segment = 0, offset = 0; segment < termIds.length; segment++, offset += STRIDE) {
+      if (x >= bounds[offset] && x < bounds[offset] + bounds[offset + 2]
+          && y >= bounds[offset + 1] && y < bounds[offset + 1] + bounds[offset + 3]) {
+        return segment;
+      }
+    }
+
+    return -1;
+  }
+}
@@ -0,0 +1,206 @@
+/*
+
+Copyright (c) 2021, Richard Cane
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package com.interactivechat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import net.runelite.api.FontTypeFace;
+
+/**
+ * The parsed parts of a single chat message along with the keyword hitboxes
+ * for the last width and font it was laid out with. Hitboxes are relative to
+ * the top left corner of the message widget so they survive scrolling.
+ */
+class MessageLayout {
+  static final int CHATLINE_HEIGHT = InteractiveChat.CHATLINE_HEIGHT;
+
+  final String text;
+  private final SpanBuffer spans;
+  private final GlyphWidthCache glyphs;
+
+  private int[] advances;
+  private int[] widths;
+  private int[] wordStarts = new int[16];
+  private int width = -1;
+  private List<Match> matches = Collections.emptyList();
+
+  /**
+   * @param spans the tokenized parts of {@code text}; copied, so the caller
+   *              may reuse the buffer.
+   */
+  MessageLayout(String text, SpanBuffer spans, GlyphWidthCache glyphs) {
+    this.text = text;
+    this.spans = spans.copy();
+    this.glyphs = glyphs;
+  }
+
+  boolean hasKeywords() {
+    return spans.keywordCount() > 0;
+  }
+
+  List<Match> layout(FontTypeFace font, int width) {
+    if (!hasKeywords()) {
+      return matches;
+    }
+
+    final int[] fontAdvances = glyphs.advances(font);
+    if (fontAdvances != advances) {
+      advances = fontAdvances;
+      widths = GlyphWidthCache.prefixWidths(font, fontAdvances, text);
+      this.width = -1;
+    }
+
+    if (width != this.width) {
+      this.width = width;
+      matches = computeMatches(width);
+    }
+
+    return matches;
+  }
+
+  private int width(int start, int end) {
+    return widths[end] - widths[start];
+  }
+
+  /**
+   * Lays the spans out the way the chatbox wraps them. Each keyword gets one
+   * hitbox per line it covers.
+   *
+   * Like the client, a line only breaks at whitespace, wherever the spans
+   * begin and end. A word that goes on a new line loses its leading
+   * whitespace, and one wider than the widget overflows a line of its own.
+   * The words that still fit on a line are found with a binary search over
+   * the prefix widths rather than one at a time.
+   */
+  private List<Match> computeMatches(int messageWidgetWidth) {
+    final List<Match> matches = new ArrayList<Match>();
+    final int wordCount = findWords(0, text.length());
+
+    int lineStart = 0;
+    int lineY = 0;
+    int word = 0;
+    int span = 0;
+    int searchIndex = 0;
+    // the last span searchIndex was counted for, as one can cover many lines
+    int counted = -1;
+    while (true) {
+      int fit = fittingWords(word, wordCount, lineStart, messageWidgetWidth);
+      while (fit < wordCount && width(lineStart, wordStarts[fit]) <= 0) {
+        // nothing on the line yet, so the next word goes on it however wide
+        fit = fittingWords(fit + 1, wordCount, lineStart, messageWidgetWidth);
+      }
+
+      // adds a hitbox for each keyword on the line, leaving span at the
+      // first one that goes on past it
+      final int lineEnd = wordStarts[fit];
+      for (; span < spans.size() && spans.start(span) < lineEnd; span++) {
+        if (spans.isKeyword(span)) {
+          if (span != counted) {
+            searchIndex++;
+            counted = span;
+          }
+          addMatch(matches, span, searchIndex, lineStart, lineEnd, lineY);
+        }
+        if (spans.end(span) > lineEnd) {
+          break;
+        }
+      }
+
+      if (fit == wordCount) {
+        return matches;
+      }
+
+      // new line, without the whitespace the word starts with
+      word = fit;
+      lineStart = trimmedStart(wordStarts[word], wordStarts[word + 1]);
+      lineY += CHATLINE_HEIGHT;
+    }
+  }
+
+  private void addMatch(List<Match> matches, int span, int searchIndex, int lineStart, int lineEnd, int lineY) {
+    final int start = Math.max(spans.start(span), lineStart);
+    final int end = Math.min(spans.end(span), lineEnd);
+    final int width = width(start, end);
+    if (width <= 0) {
+      return;
+    }
+
+    final String term = spans.isLinked(span)
+        ? text.substring(spans.start(span), spans.end(span))
+        : text.substring(spans.start(span) + 1, spans.end(span) - 1);
+    matches.add(new Match(searchIndex, term, spans.title(span), spans.titleGeneration(), width(lineStart, start), lineY, width));
+  }
+
+  // fills wordStarts with where each word of [start, end) begins, followed by
+  // end, and returns the number of words
+  private int findWords(int start, int end) {
+    int count = 0;
+    for (int i = start; i < end; i++) {
+      if (i == start || isWhitespace(text.charAt(i))) {
+        if (count + 1 >= wordStarts.length) {
+          wordStarts = Arrays.copyOf(wordStarts, wordStarts.length * 2);
+        }
+        wordStarts[count++] = i;
+      }
+    }
+    wordStarts[count] = end;
+    return count;
+  }
+
+  // the last word from `from` on that ends within maxWidth of lineStart, or
+  // from if there's none
+  private int fittingWords(int from, int count, int lineStart, int maxWidth) {
+    int low = from;
+    int high = count;
+    while (low < high) {
+      final int mid = (low + high + 1) >>> 1;
+      if (width(lineStart, wordStarts[mid]) <= maxWidth) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return low;
+  }
+
+  // same as the start of String.trim()
+  private int trimmedStart(int start, int end) {
+    while (start < end && text.charAt(start) <= ' ') {
+      start++;
+    }
+    return start;
+  }
+
+  // same as \s
+  private static boolean isWhitespace(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+  }
+}
@@ -0,0 +1,190 @@
+/*
+
+Copyright (c) 2021, Richard Cane
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package com.interactivechat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import net.runelite.api.FontTypeFace;
+import net.runelite.api.widgets.Widget;
+import net.runelite.client.util.Text;
+
+/**
+ * Keeps a bounded set of {@link MessageLayout}s so the overlay doesn't have to
+ * re-parse and re-measure the hovered message on every frame.
+ *
+ * Messages are tokenized once when they arrive, by the
+ * {@link ChatParsePipeline}, and their spans kept in the
+ * {@link MessageSpanStore}. A message's layout is only made the first time
+ * one of its lines is indexed, from the stored spans rather than by parsing
+ * again. Only messages from before the plugin started, or since evicted from
+ * the store, are parsed here. Layouts are looked up by the raw widget text,
+ * which the client hands back as the same string instance every frame.
+ *
+ * Only the {@link KeywordIndex} asks for layouts: for the chatbox lines
+ * within a container height of the visible ones, and for split chat. The 256
+ * entries hold several times that. Counting the lines with a term goes to the
+ * span store instead, so it doesn't cycle through them.
+ *
+ * On top of that, the laid out hitboxes of each message line widget are kept
+ * in a fixed number of slots keyed by widget, text instance, width and font,
+ * so probing a line that hasn't changed is a single array lookup.
+ */
+@Singleton
+class MessageLayoutCache {
+  private static final int MAX_ENTRIES = 256;
+  private static final int LINE_SLOTS = 512;
+
+  private final Map<String, MessageLayout> byWidgetText = new BoundedMap<>();
+  private final SpanBuffer spans = new SpanBuffer();
+  private final SpanBuffer linkedSpans = new SpanBuffer();
+  private final TitleLinker titleLinker = new TitleLinker();
+  private final GlyphWidthCache glyphs;
+  private final TitleDictionary titles;
+  private final MessageSpanStore spanStore;
+  private final PluginMetrics metrics;
+
+  // direct-mapped by widget, a slot is only valid for the generation it was filled in
+  private final LineSlot[] lineSlots = new LineSlot[LINE_SLOTS];
+  private int lineGeneration;
+
+  @Inject
+  MessageLayoutCache(GlyphWidthCache glyphs, TitleDictionary titles, MessageSpanStore spanStore, PluginMetrics metrics) {
+    this.glyphs = glyphs;
+    this.titles = titles;
+    this.spanStore = spanStore;
+    this.metrics = metrics;
+  }
+
+  MessageLayout get(Widget messageWidget) {
+    final String widgetText = messageWidget.getText();
+    if (widgetText == null) {
+      return null;
+    }
+
+    MessageLayout layout = byWidgetText.get(widgetText);
+    if (layout != null) {
+      metrics.cacheHit();
+    } else {
+      metrics.cacheMiss();
+      final String message = Text.removeFormattingTags(widgetText);
+      final SpanBuffer stored = spanStore.find(message);
+      layout = stored != null ? new MessageLayout(message, stored, glyphs) : parse(message);
+
+      byWidgetText.put(widgetText, layout);
+    }
+
+    return layout;
+  }
+
+  /**
+   * Returns the keyword hitboxes of a message line widget, relative to the
+   * widget, laid out with its current font and width.
+   */
+  List<Match> layout(Widget line) {
+    final int id = line.getId();
+    final int index = line.getIndex();
+    final String text = line.getText();
+    final FontTypeFace font = line.getFont();
+    final int width = line.getWidth();
+
+    final int hash = (id ^ (id >>> 16)) * 31 + index;
+    LineSlot slot = lineSlots[(hash ^ (hash >>> 9)) & (LINE_SLOTS - 1)];
+    if (slot != null && slot.generation == lineGeneration && slot.id == id && slot.index == index
+        && slot.text == text && slot.font == font && slot.width == width) {
+      return slot.matches;
+    }
+
+    final MessageLayout layout = get(line);
+    final List<Match> matches = layout == null ? Collections.<Match>emptyList() : layout.layout(font, width);
+
+    if (slot == null) {
+      slot = new LineSlot();
+      lineSlots[(hash ^ (hash >>> 9)) & (LINE_SLOTS - 1)] = slot;
+    }
+    slot.generation = lineGeneration;
+    slot.id = id;
+    slot.index = index;
+    slot.text = text;
+    slot.font = font;
+    slot.width = width;
+    slot.matches = matches;
+    return matches;
+  }
+
+  /**
+   * Forgets every line layout, for when the chatbox has been rebuilt or its
+   * dimensions have changed.
+   */
+  void invalidateLines() {
+    lineGeneration++;
+  }
+
+  private MessageLayout parse(String message) {
+    BracketTokenizer.tokenize(message, spans);
+    final TitleAutomaton automaton = titles.automaton();
+    if (automaton == null) {
+      return new MessageLayout(message, spans, glyphs);
+    }
+
+    titleLinker.link(automaton, message, spans, linkedSpans);
+    return new MessageLayout(message, linkedSpans, glyphs);
+  }
+
+  void clear() {
+    byWidgetText.clear();
+    Arrays.fill(lineSlots, null);
+  }
+
+  private static class LineSlot {
+    int generation;
+    int id;
+    int index;
+    String text;
+    FontTypeFace font;
+    int width;
+    List<Match> matches;
+  }
+
+  private static class BoundedMap<K, V> extends LinkedHashMap<K, V> {
+    BoundedMap() {
+      super(16, 0.75f, true);
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+      return size() > MAX_ENTRIES;
+    }
+  }
+}
@@ -0,0 +1,146 @@
+/*
+
+Copyright (c) 2021, Richard Cane
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package com.interactivechat;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import net.runelite.api.ChatLineBuffer;
+import net.runelite.api.Client;
+
+/**
+ * The parsed spans of recent chat messages, along with their resolved titles,
+ * kept in a ring sized to the client's own chat history. A message's slot is
+ * picked by its id, so each new message evicts the one that arrived a full
+ * history earlier and memory use stays flat however long the session runs.
+ *
+ * Messages are found by id, or by their plain text through a direct-mapped
+ * table. A text that collides with a newer one just isn't found and gets
+ * parsed again. Client thread only.
+ */
+@Singleton
+class MessageSpanStore {
+  private static final int MIN_CAPACITY = 256;
+
+  private final Client client;
+  private final int fixedCapacity;
+
+  private int[] messageIds;
+  private String[] texts;
+  private SpanBuffer[] spans;
+  // slot + 1 by text hash, or 0
+  private int[] byText;
+
+  @Inject
+  MessageSpanStore(Client client) {
+    this.client = client;
+    this.fixedCapacity = 0;
+  }
+
+  MessageSpanStore(int capacity) {
+    this.client = null;
+    this.fixedCapacity = capacity;
+  }
+
+  void put(int messageId, String text, SpanBuffer messageSpans) {
+    if (messageIds == null) {
+      allocate(fixedCapacity > 0 ? fixedCapacity : historyCapacity());
+    }
+
+    final int slot = messageId & (messageIds.length - 1);
+    if (texts[slot] != null) {
+      final int evicted = textSlot(texts[slot]);
+      if (byText[evicted] == slot + 1) {
+        byText[evicted] = 0;
+      }
+    }
+
+    messageIds[slot] = messageId;
+    texts[slot] = text;
+    if (spans[slot] == null) {
+      spans[slot] = new SpanBuffer();
+    }
+    spans[slot].copyFrom(messageSpans);
+    byText[textSlot(text)] = slot + 1;
+  }
+
+  /**
+   * Returns the spans of the message with the given id, or null if it has
+   * none or has been evicted. The buffer is reused, so copy it to keep it.
+   */
+  SpanBuffer get(int messageId) {
+    if (messageIds == null) {
+      return null;
+    }
+
+    final int slot = messageId & (messageIds.length - 1);
+    return texts[slot] != null && messageIds[slot] == messageId ? spans[slot] : null;
+  }
+
+  /**
+   * Returns the spans of the latest message with the given plain text, or
+   * null. The buffer is reused, so copy it to keep it.
+   */
+  SpanBuffer find(String text) {
+    if (messageIds == null) {
+      return null;
+    }
+
+    final int slot = byText[textSlot(text)] - 1;
+    return slot >= 0 && text.equals(texts[slot]) ? spans[slot] : null;
+  }
+
+  void clear() {
+    messageIds = null;
+    texts = null;
+    spans = null;
+    byText = null;
+  }
+
+  private int textSlot(String text) {
+    final int hash = text.hashCode();
+    return (hash ^ (hash >>> 16)) & (byText.length - 1);
+  }
+
+  // how many messages the client keeps across all of its chat buffers
+  private int historyCapacity() {
+    int lines = 0;
+    for (ChatLineBuffer buffer : client.getChatLineMap().values()) {
+      lines += buffer.getLines().length;
+    }
+    return lines;
+  }
+
+  private void allocate(int capacity) {
+    final int size = Integer.highestOneBit(Math.max(MIN_CAPACITY, capacity) - 1) << 1;
+    messageIds = new int[size];
+    texts = new String[size];
+    spans = new SpanBuffer[size];
+    byText = new int[size * 2];
+  }
+}
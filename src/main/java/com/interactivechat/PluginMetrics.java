@@ -0,0 +1,165 @@
+/*
+
+Copyright (c) 2021, Richard Cane
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package com.interactivechat;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.inject.Singleton;
+
+import jdk.jfr.FlightRecorder;
+
+import lombok.Getter;
+
+/**
+ * Always-on counters for the plugin's hot paths, plus the switch for the
+ * {@link FlightRecorderEvents}. Callers check {@link #isRecording()} before
+ * timing anything so the events cost nothing while they're off.
+ */
+@Singleton
+class PluginMetrics {
+  /**
+   * Whether the runtime has Flight Recorder, which Java 8 only gained in
+   * 8u262. Without it recording stays off and the event classes are never
+   * loaded.
+   */
+  static final boolean FLIGHT_RECORDER = hasFlightRecorder();
+
+  @Getter
+  private final LongAdder messagesProcessed = new LongAdder();
+  @Getter
+  private final LongAdder messagesRewritten = new LongAdder();
+  @Getter
+  private final LongAdder messagesDropped = new LongAdder();
+  @Getter
+  private final LongAdder messagesFailed = new LongAdder();
+  @Getter
+  private final LongAdder cacheHits = new LongAdder();
+  @Getter
+  private final LongAdder cacheMisses = new LongAdder();
+  @Getter
+  private final LongAdder hoverFramesSkipped = new LongAdder();
+
+  @Getter
+  private volatile boolean recording;
+
+  private final Runnable emitCounters = () -> {
+    final FlightRecorderEvents.CountersEvent event = new FlightRecorderEvents.CountersEvent();
+    event.messagesProcessed = messagesProcessed.sum();
+    event.messagesRewritten = messagesRewritten.sum();
+    event.messagesDropped = messagesDropped.sum();
+    event.messagesFailed = messagesFailed.sum();
+    event.cacheHits = cacheHits.sum();
+    event.cacheMisses = cacheMisses.sum();
+    event.hoverFramesSkipped = hoverFramesSkipped.sum();
+    event.commit();
+  };
+
+  synchronized void setRecording(boolean recording) {
+    recording &= FLIGHT_RECORDER;
+    if (recording == this.recording) {
+      return;
+    }
+
+    if (recording) {
+      FlightRecorder.addPeriodicEvent(FlightRecorderEvents.CountersEvent.class, emitCounters);
+    } else {
+      FlightRecorder.removePeriodicEvent(emitCounters);
+    }
+    this.recording = recording;
+  }
+
+  private static boolean hasFlightRecorder() {
+    try {
+      Class.forName("jdk.jfr.FlightRecorder");
+      return true;
+    } catch (ClassNotFoundException | LinkageError e) {
+      return false;
+    }
+  }
+
+  void chatMessage(long parseTime, int messageLength, int linkCount, boolean rewritten) {
+    messagesProcessed.increment();
+    if (rewritten) {
+      messagesRewritten.increment();
+    }
+
+    if (!recording) {
+      return;
+    }
+
+    final FlightRecorderEvents.ChatMessageEvent event = new FlightRecorderEvents.ChatMessageEvent();
+    if (event.shouldCommit()) {
+      event.parseTime = parseTime;
+      event.messageLength = messageLength;
+      event.linkCount = linkCount;
+      event.rewritten = rewritten;
+      event.commit();
+    }
+  }
+
+  void messageDropped() {
+    messagesDropped.increment();
+  }
+
+  void messageFailed() {
+    messagesFailed.increment();
+  }
+
+  void render(long widgetLookupTime, long keywordIndexTime, long hitTestTime, long paintTime, int segments) {
+    final FlightRecorderEvents.RenderEvent event = new FlightRecorderEvents.RenderEvent();
+    if (event.shouldCommit()) {
+      event.widgetLookupTime = widgetLookupTime;
+      event.keywordIndexTime = keywordIndexTime;
+      event.hitTestTime = hitTestTime;
+      event.paintTime = paintTime;
+      event.segments = segments;
+      event.commit();
+    }
+  }
+
+  void click(long hitTestTime, boolean hit) {
+    final FlightRecorderEvents.ClickEvent event = new FlightRecorderEvents.ClickEvent();
+    if (event.shouldCommit()) {
+      event.hitTestTime = hitTestTime;
+      event.hit = hit;
+      event.commit();
+    }
+  }
+
+  void hoverFrameSkipped() {
+    hoverFramesSkipped.increment();
+  }
+
+  void cacheHit() {
+    cacheHits.increment();
+  }
+
+  void cacheMiss() {
+    cacheMisses.increment();
+  }
+}
\ No newline at end of file
@@ -0,0 +1,70 @@
+/*
+
+Copyright (c) 2021, Richard Cane
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package com.interactivechat;
+
+import java.awt.Color;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import net.runelite.api.Client;
+import net.runelite.api.Varbits;
+
+/**
+ * The config values and client state the hover painter needs, read once
+ * instead of through the config proxy and varbits on every frame.
+ */
+@Getter
+@RequiredArgsConstructor
+class RenderSettings {
+  private final HoverMode onHover;
+  private final Color hoverColor;
+  // transparent resizable chatboxes need highlights 1px wider
+  private final boolean widenHighlight;
+  private final boolean wikiPreview;
+
+  static RenderSettings from(InteractiveChatConfig config, Client client) {
+    return new RenderSettings(config.onHover(), config.hoverColor(), widenHighlight(client), config.wikiPreview());
+  }
+
+  static boolean widenHighlight(Client client) {
+    return widenHighlight(client, client.getVarbitValue(Varbits.TRANSPARENT_CHATBOX.getId()));
+  }
+
+  static boolean widenHighlight(Client client, int transparentChatbox) {
+    return transparentChatbox > 0 && GameClientLayout.from(client) != GameClientLayout.FIXED;
+  }
+
+  RenderSettings withWidenHighlight(boolean widenHighlight) {
+    if (widenHighlight == this.widenHighlight) {
+      return this;
+    }
+
+    return new RenderSettings(onHover, hoverColor, widenHighlight, wikiPreview);
+  }
+}
@@ -0,0 +1,187 @@
+/*
+
+Copyright (c) 2021, Richard Cane
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package com.interactivechat;
+
+import java.util.Arrays;
+
+/**
+ * A reusable list of (start, end, kind, title) spans packed into a single int
+ * array, filled by {@link BracketTokenizer} and {@link TitleLinker}.
+ *
+ * Bracketed spans include their delimiters. Linked spans are dictionary titles
+ * found in otherwise plain text and are keywords all the same. A keyword's
+ * title is its position in the {@link TitlePrefixIndex} of
+ * {@link #titleGeneration()}, once resolved. A title that was only found by
+ * correcting the term is stored as {@link #corrected(int)}.
+ */
+class SpanBuffer {
+  static final int UNRESOLVED = -2;
+  static final int NO_TITLE = -1;
+  private static final int CORRECTED = -3;
+
+  private static final int STRIDE = 4;
+
+  private static final int PLAIN = 0;
+  private static final int BRACKETED = 1;
+  private static final int LINKED = 2;
+
+  private int[] spans = new int[STRIDE * 16];
+  private int size;
+  private int bracketedCount;
+  private int linkedCount;
+  private int titleGeneration;
+
+  static int corrected(int position) {
+    return CORRECTED - position;
+  }
+
+  static boolean isCorrected(int title) {
+    return title <= CORRECTED;
+  }
+
+  /**
+   * The position in the title index of a found or corrected title.
+   */
+  static int position(int title) {
+    return title <= CORRECTED ? CORRECTED - title : title;
+  }
+
+  void clear() {
+    size = 0;
+    bracketedCount = 0;
+    linkedCount = 0;
+    titleGeneration = 0;
+  }
+
+  void add(int start, int end, boolean bracketed) {
+    add(start, end, bracketed ? BRACKETED : PLAIN);
+    if (bracketed) {
+      bracketedCount++;
+    }
+  }
+
+  void addLinked(int start, int end) {
+    add(start, end, LINKED);
+    linkedCount++;
+  }
+
+  private void add(int start, int end, int kind) {
+    final int offset = size * STRIDE;
+    if (offset + STRIDE > spans.length) {
+      spans = Arrays.copyOf(spans, spans.length * 2);
+    }
+
+    spans[offset] = start;
+    spans[offset + 1] = end;
+    spans[offset + 2] = kind;
+    spans[offset + 3] = UNRESOLVED;
+    size++;
+  }
+
+  int size() {
+    return size;
+  }
+
+  int bracketedCount() {
+    return bracketedCount;
+  }
+
+  int keywordCount() {
+    return bracketedCount + linkedCount;
+  }
+
+  int start(int span) {
+    return spans[span * STRIDE];
+  }
+
+  int end(int span) {
+    return spans[span * STRIDE + 1];
+  }
+
+  boolean isBracketed(int span) {
+    return spans[span * STRIDE + 2] == BRACKETED;
+  }
+
+  boolean isLinked(int span) {
+    return spans[span * STRIDE + 2] == LINKED;
+  }
+
+  boolean isKeyword(int span) {
+    return spans[span * STRIDE + 2] != PLAIN;
+  }
+
+  int title(int span) {
+    return spans[span * STRIDE + 3];
+  }
+
+  void setTitle(int span, int title) {
+    spans[span * STRIDE + 3] = title;
+  }
+
+  /**
+   * The {@link TitlePrefixIndex#generation()} the titles were resolved in, or
+   * 0 if they weren't.
+   */
+  int titleGeneration() {
+    return titleGeneration;
+  }
+
+  void setTitleGeneration(int titleGeneration) {
+    this.titleGeneration = titleGeneration;
+  }
+
+  /**
+   * Replaces the contents of this buffer with those of {@code other}, reusing
+   * its array when it's big enough.
+   */
+  void copyFrom(SpanBuffer other) {
+    final int length = other.size * STRIDE;
+    if (spans.length < length) {
+      spans = new int[length];
+    }
+    System.arraycopy(other.spans, 0, spans, 0, length);
+    size = other.size;
+    bracketedCount = other.bracketedCount;
+    linkedCount = other.linkedCount;
+    titleGeneration = other.titleGeneration;
+  }
+
+  /**
+   * Copies the spans into a new, exactly sized buffer that is safe to keep
+   * after this one is reused.
+   */
+  SpanBuffer copy() {
+    final SpanBuffer copy = new SpanBuffer();
+    copy.spans = Arrays.copyOf(spans, size * STRIDE);
+    copy.size = size;
+    copy.bracketedCount = bracketedCount;
+    copy.linkedCount = linkedCount;
+    copy.titleGeneration = titleGeneration;
+    return copy;
+  }
+}
@@ -0,0 +1,389 @@
+/*
+
+Copyright (c) 2021, Richard Cane
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package com.interactivechat;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An Aho-Corasick automaton over the lowercased words of known wiki titles,
+ * packed into flat arrays so it can be loaded straight from its binary form.
+ *
+ * Words are runs of letters, digits and apostrophes. Titles only match across
+ * spaces and hyphens, so {@code cook's assistant} matches but
+ * {@code cook's, assistant} doesn't. Titles with any other punctuation are
+ * left out when building.
+ *
+ * Immutable, so it can be shared between threads.
+ */
+final class TitleAutomaton {
+  // word ids by hash, open addressing, -1 for an empty slot
+  private final int[] wordSlots;
+  // each word's chars are wordChars[wordOffsets[id], wordOffsets[id + 1])
+  private final int[] wordOffsets;
+  private final char[] wordChars;
+
+  // states are numbered breadth first, the root is 0. A state's edges are
+  // edgeWords/edgeTargets[edgeOffsets[state], edgeOffsets[state + 1]),
+  // sorted by word id
+  private final int[] edgeOffsets;
+  private final int[] edgeWords;
+  private final int[] edgeTargets;
+  private final int[] fail;
+  // words in the title ending at a state, or 0
+  private final int[] titleLength;
+  // the closest state along the fail links, starting with the state itself,
+  // that ends a title, or -1
+  private final int[] output;
+
+  private TitleAutomaton(
+      int[] wordSlots, int[] wordOffsets, char[] wordChars,
+      int[] edgeOffsets, int[] edgeWords, int[] edgeTargets,
+      int[] fail, int[] titleLength, int[] output) {
+    this.wordSlots = wordSlots;
+    this.wordOffsets = wordOffsets;
+    this.wordChars = wordChars;
+    this.edgeOffsets = edgeOffsets;
+    this.edgeWords = edgeWords;
+    this.edgeTargets = edgeTargets;
+    this.fail = fail;
+    this.titleLength = titleLength;
+    this.output = output;
+  }
+
+  static boolean isWordChar(char c) {
+    return Character.isLetterOrDigit(c) || c == '\'';
+  }
+
+  static boolean isJoiner(char c) {
+    return c == ' ' || c == '-';
+  }
+
+  int stateCount() {
+    return fail.length;
+  }
+
+  /**
+   * Returns the id of the word at {@code text[start, end)}, ignoring case, or
+   * -1 if no title contains it.
+   */
+  int wordId(CharSequence text, int start, int end) {
+    final int mask = wordSlots.length - 1;
+    for (int slot = hash(text, start, end) & mask; ; slot = (slot + 1) & mask) {
+      final int word = wordSlots[slot];
+      if (word == -1 || wordEquals(word, text, start, end)) {
+        return word;
+      }
+    }
+  }
+
+  /**
+   * Returns the state after reading a word, where a word id of -1 goes back to
+   * the root.
+   */
+  int next(int state, int word) {
+    if (word == -1) {
+      return 0;
+    }
+
+    while (true) {
+      final int target = edge(state, word);
+      if (target != -1) {
+        return target;
+      }
+      if (state == 0) {
+        return 0;
+      }
+      state = fail[state];
+    }
+  }
+
+  /**
+   * Returns the longest title ending at the state, or -1.
+   */
+  int output(int state) {
+    return output[state];
+  }
+
+  /**
+   * Returns the next shorter title ending wherever {@code titleState}'s does,
+   * or -1.
+   */
+  int nextOutput(int titleState) {
+    return output[fail[titleState]];
+  }
+
+  int titleLength(int titleState) {
+    return titleLength[titleState];
+  }
+
+  private int edge(int state, int word) {
+    int low = edgeOffsets[state];
+    int high = edgeOffsets[state + 1] - 1;
+    while (low <= high) {
+      final int mid = (low + high) >>> 1;
+      final int midWord = edgeWords[mid];
+      if (midWord < word) {
+        low = mid + 1;
+      } else if (midWord > word) {
+        high = mid - 1;
+      } else {
+        return edgeTargets[mid];
+      }
+    }
+    return -1;
+  }
+
+  private boolean wordEquals(int word, CharSequence text, int start, int end) {
+    final int offset = wordOffsets[word];
+    if (wordOffsets[word + 1] - offset != end - start) {
+      return false;
+    }
+
+    for (int i = start; i < end; i++) {
+      if (Character.toLowerCase(text.charAt(i)) != wordChars[offset + i - start]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int hash(CharSequence text, int start, int end) {
+    int hash = 0;
+    for (int i = start; i < end; i++) {
+      hash = 31 * hash + Character.toLowerCase(text.charAt(i));
+    }
+    return hash ^ (hash >>> 16);
+  }
+
+  static TitleAutomaton build(Iterable<String> titles) {
+    final Map<String, Integer> wordIds = new HashMap<>();
+    final List<String> words = new ArrayList<>();
+    final List<Map<Integer, Integer>> children = new ArrayList<>();
+    final List<Integer> lengths = new ArrayList<>();
+    children.add(new HashMap<>());
+    lengths.add(0);
+
+    for (String title : titles) {
+      final List<String> titleWords = split(title.trim());
+      if (titleWords == null) {
+        continue;
+      }
+
+      int state = 0;
+      for (String word : titleWords) {
+        Integer id = wordIds.get(word);
+        if (id == null) {
+          id = words.size();
+          wordIds.put(word, id);
+          words.add(word);
+        }
+
+        Integer child = children.get(state).get(id);
+        if (child == null) {
+          child = children.size();
+          children.get(state).put(id, child);
+          children.add(new HashMap<>());
+          lengths.add(0);
+        }
+        state = child;
+      }
+      lengths.set(state, titleWords.size());
+    }
+
+    // number the states breadth first
+    final int stateCount = children.size();
+    final int[] order = new int[stateCount];
+    final int[] number = new int[stateCount];
+    int edgeCount = 0;
+    int queued = 1;
+    for (int head = 0; head < queued; head++) {
+      final Map<Integer, Integer> edges = children.get(order[head]);
+      final Integer[] edgeWordIds = edges.keySet().toArray(new Integer[0]);
+      Arrays.sort(edgeWordIds);
+      for (Integer word : edgeWordIds) {
+        final int child = edges.get(word);
+        number[child] = queued;
+        order[queued++] = child;
+      }
+      edgeCount += edgeWordIds.length;
+    }
+
+    final int[] edgeOffsets = new int[stateCount + 1];
+    final int[] edgeWords = new int[edgeCount];
+    final int[] edgeTargets = new int[edgeCount];
+    final int[] titleLength = new int[stateCount];
+    int edge = 0;
+    for (int state = 0; state < stateCount; state++) {
+      final Map<Integer, Integer> edges = children.get(order[state]);
+      final Integer[] edgeWordIds = edges.keySet().toArray(new Integer[0]);
+      Arrays.sort(edgeWordIds);
+      edgeOffsets[state] = edge;
+      for (Integer word : edgeWordIds) {
+        edgeWords[edge] = word;
+        edgeTargets[edge] = number[edges.get(word)];
+        edge++;
+      }
+      titleLength[state] = lengths.get(order[state]);
+    }
+    edgeOffsets[stateCount] = edge;
+
+    final int capacity = Integer.highestOneBit(Math.max(8, words.size()) * 2) * 2;
+    final int[] wordSlots = new int[capacity];
+    Arrays.fill(wordSlots, -1);
+    final int[] wordOffsets = new int[words.size() + 1];
+    final StringBuilder wordChars = new StringBuilder();
+    for (int id = 0; id < words.size(); id++) {
+      final String word = words.get(id);
+      wordOffsets[id] = wordChars.length();
+      wordChars.append(word);
+
+      int slot = hash(word, 0, word.length()) & (capacity - 1);
+      while (wordSlots[slot] != -1) {
+        slot = (slot + 1) & (capacity - 1);
+      }
+      wordSlots[slot] = id;
+    }
+    wordOffsets[words.size()] = wordChars.length();
+
+    final int[] fail = new int[stateCount];
+    final int[] output = new int[stateCount];
+    final TitleAutomaton automaton = new TitleAutomaton(
+        wordSlots, wordOffsets, wordChars.toString().toCharArray(),
+        edgeOffsets, edgeWords, edgeTargets, fail, titleLength, output);
+
+    // parents come before their children, so their fail links are ready
+    output[0] = -1;
+    for (int state = 0; state < stateCount; state++) {
+      for (int e = edgeOffsets[state]; e < edgeOffsets[state + 1]; e++) {
+        final int child = edgeTargets[e];
+        fail[child] = state == 0 ? 0 : automaton.next(fail[state], edgeWords[e]);
+      }
+      if (state > 0) {
+        output[state] = titleLength[state] > 0 ? state : output[fail[state]];
+      }
+    }
+
+    return automaton;
+  }
+
+  // a title's words, or null if it has punctuation words can't be joined by
+  private static List<String> split(String title) {
+    final List<String> words = new ArrayList<>();
+    final int length = title.length();
+    int i = 0;
+    while (i < length) {
+      final char c = title.charAt(i);
+      if (!isWordChar(c)) {
+        if (!isJoiner(c)) {
+          return null;
+        }
+        i++;
+        continue;
+      }
+
+      final int start = i;
+      while (i < length && isWordChar(title.charAt(i))) {
+        i++;
+      }
+      words.add(lowerCase(title, start, i));
+    }
+    return words.isEmpty() ? null : words;
+  }
+
+  // per char, the same way words are compared
+  private static String lowerCase(String text, int start, int end) {
+    final char[] chars = new char[end - start];
+    for (int i = start; i < end; i++) {
+      chars[i - start] = Character.toLowerCase(text.charAt(i));
+    }
+    return new String(chars);
+  }
+
+  void write(DataOutputStream out) throws IOException {
+    writeInts(out, wordSlots);
+    writeInts(out, wordOffsets);
+    writeInts(out, edgeOffsets);
+    writeInts(out, edgeWords);
+    writeInts(out, edgeTargets);
+    writeInts(out, fail);
+    writeInts(out, titleLength);
+    writeInts(out, output);
+    out.writeInt(wordChars.length);
+    for (char c : wordChars) {
+      out.writeChar(c);
+    }
+  }
+
+  static TitleAutomaton read(ByteBuffer in) {
+    final int[] wordSlots = readInts(in);
+    final int[] wordOffsets = readInts(in);
+    final int[] edgeOffsets = readInts(in);
+    final int[] edgeWords = readInts(in);
+    final int[] edgeTargets = readInts(in);
+    final int[] fail = readInts(in);
+    final int[] titleLength = readInts(in);
+    final int[] output = readInts(in);
+    final char[] wordChars = new char[checkedLength(in, 2)];
+    in.asCharBuffer().get(wordChars);
+    in.position(in.position() + wordChars.length * 2);
+
+    return new TitleAutomaton(
+        wordSlots, wordOffsets, wordChars, edgeOffsets, edgeWords, edgeTargets, fail, titleLength, output);
+  }
+
+  // so a damaged file can't ask for a huge array
+  private static int checkedLength(ByteBuffer in, int elementSize) {
+    final int length = in.getInt();
+    if (length < 0 || length > in.remaining() / elementSize) {
+      throw new BufferUnderflowException();
+    }
+    return length;
+  }
+
+  private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+    out.writeInt(values.length);
+    for (int value : values) {
+      out.writeInt(value);
+    }
+  }
+
+  private static int[] readInts(ByteBuffer in) {
+    final int[] values = new int[checkedLength(in, 4)];
+    in.asIntBuffer().get(values);
+    in.position(in.position() + values.length * 4);
+    return values;
+  }
+}
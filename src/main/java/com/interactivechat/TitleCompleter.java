@@ -0,0 +1,204 @@
+/*
+
+Copyright (c) 2021, Richard Cane
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package com.interactivechat;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import net.runelite.api.Client;
+import net.runelite.api.ScriptID;
+import net.runelite.api.VarClientStr;
+import net.runelite.client.callback.ClientThread;
+
+/**
+ * Suggests dictionary titles for the bracketed term being typed in the
+ * chatbox. The term is looked up whenever the typed text changes, and the
+ * dictionary is only loaded once there's a term to look up.
+ */
+@Singleton
+class TitleCompleter {
+  static final int MAX_SUGGESTIONS = 5;
+  private static final int MIN_PREFIX_LENGTH = 2;
+
+  private final Client client;
+  private final ClientThread clientThread;
+  private final TitleDictionary titles;
+
+  // client thread only
+  private String typedText = "";
+  private boolean typing;
+  private TitlePrefixIndex searchedIndex;
+
+  // read on the key listener's thread
+  private volatile Suggestions suggestions = Suggestions.NONE;
+
+  @Inject
+  TitleCompleter(Client client, ClientThread clientThread, TitleDictionary titles) {
+    this.client = client;
+    this.clientThread = clientThread;
+    this.titles = titles;
+  }
+
+  Suggestions suggestions() {
+    return suggestions;
+  }
+
+  /**
+   * Whether a term long enough to look up is being typed, whether or not
+   * the dictionary has loaded or has any titles for it.
+   */
+  boolean isTyping() {
+    return typing;
+  }
+
+  /**
+   * Looks the typed term up again. Called on the client thread when the
+   * typed text changes.
+   */
+  void update() {
+    final String text = client.getVar(VarClientStr.CHATBOX_TYPED_TEXT);
+    search(text == null ? "" : text);
+  }
+
+  /**
+   * Looks the typed term up if the dictionary has loaded since it was typed.
+   * Called on the client thread.
+   */
+  void refresh() {
+    if (typing && searchedIndex == null) {
+      search(typedText);
+    }
+  }
+
+  private void search(String text) {
+    typedText = text;
+    typing = false;
+    searchedIndex = null;
+    suggestions = Suggestions.NONE;
+
+    // the term is everything after the last [ that hasn't been closed
+    final int open = text.lastIndexOf(InteractiveChat.LEFT_DELIMITER);
+    if (open == -1 || text.indexOf(InteractiveChat.RIGHT_DELIMITER, open) != -1) {
+      return;
+    }
+
+    int termStart = open + 1;
+    while (termStart < text.length() && text.charAt(termStart) == ' ') {
+      termStart++;
+    }
+    if (text.length() - termStart < MIN_PREFIX_LENGTH) {
+      return;
+    }
+
+    typing = true;
+    final TitlePrefixIndex index = titles.completionIndex();
+    if (index == null) {
+      return;
+    }
+    searchedIndex = index;
+
+    final int first = index.first(text, termStart, text.length());
+    if (first == -1) {
+      return;
+    }
+
+    int count = 1;
+    while (count < MAX_SUGGESTIONS
+        && first + count < index.size()
+        && index.startsWith(first + count, text, termStart, text.length())) {
+      count++;
+    }
+
+    // nothing left to complete
+    if (count == 1 && index.title(first).length() == text.length() - termStart) {
+      return;
+    }
+
+    suggestions = new Suggestions(text, open, index, first, count);
+  }
+
+  void clear() {
+    typedText = "";
+    typing = false;
+    searchedIndex = null;
+    suggestions = Suggestions.NONE;
+  }
+
+  /**
+   * Replaces the typed term with the first suggestion and closes the bracket.
+   * Returns false if there was nothing to accept.
+   */
+  boolean accept() {
+    final Suggestions accepted = suggestions;
+    if (accepted.isEmpty()) {
+      return false;
+    }
+
+    clientThread.invoke(() -> {
+      // the input may have changed since the key was pressed
+      if (!accepted.typedText.equals(client.getVar(VarClientStr.CHATBOX_TYPED_TEXT))) {
+        return;
+      }
+
+      final String completed = accepted.typedText.substring(0, accepted.open + 1) + accepted.title(0) + InteractiveChat.RIGHT_DELIMITER;
+      client.setVar(VarClientStr.CHATBOX_TYPED_TEXT, completed);
+      client.runScript(ScriptID.CHAT_PROMPT_INIT);
+    });
+    return true;
+  }
+
+  static final class Suggestions {
+    static final Suggestions NONE = new Suggestions("", -1, null, 0, 0);
+
+    private final String typedText;
+    private final int open;
+    private final TitlePrefixIndex index;
+    private final int first;
+    private final int count;
+
+    private Suggestions(String typedText, int open, TitlePrefixIndex index, int first, int count) {
+      this.typedText = typedText;
+      this.open = open;
+      this.index = index;
+      this.first = first;
+      this.count = count;
+    }
+
+    boolean isEmpty() {
+      return count == 0;
+    }
+
+    int size() {
+      return count;
+    }
+
+    String title(int i) {
+      return index.title(first + i);
+    }
+  }
+}
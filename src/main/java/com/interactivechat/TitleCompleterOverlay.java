@@ -0,0 +1,122 @@
+/*
+
+Copyright (c) 2021, Richard Cane
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package com.interactivechat;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.inject.Inject;
+
+import net.runelite.api.Client;
+import net.runelite.api.widgets.Widget;
+import net.runelite.api.widgets.WidgetInfo;
+import net.runelite.client.eventbus.Subscribe;
+import net.runelite.client.events.ConfigChanged;
+import net.runelite.client.ui.overlay.Overlay;
+import net.runelite.client.ui.overlay.OverlayLayer;
+import net.runelite.client.ui.overlay.OverlayPosition;
+
+/**
+ * Draws the {@link TitleCompleter}'s suggestions in a small box just above
+ * the chatbox input, the first one highlighted since Tab picks it. Only
+ * attached while a term is being typed.
+ */
+class TitleCompleterOverlay extends Overlay {
+  private static final Color BACKGROUND_COLOR = new Color(0, 0, 0, 180);
+  private static final Color SUGGESTION_COLOR = new Color(200, 200, 200);
+  private static final int PADDING = 3;
+
+  private final Client client;
+  private final InteractiveChatConfig config;
+  private final TitleCompleter completer;
+
+  // read from the config proxy when next drawn
+  private final AtomicReference<Color> textColor = new AtomicReference<>();
+
+  @Inject
+  TitleCompleterOverlay(Client client, InteractiveChatConfig config, TitleCompleter completer) {
+    setPosition(OverlayPosition.DYNAMIC);
+    setLayer(OverlayLayer.ABOVE_WIDGETS);
+
+    this.client = client;
+    this.config = config;
+    this.completer = completer;
+  }
+
+  @Subscribe
+  public void onConfigChanged(ConfigChanged event) {
+    if (event.getGroup().equals(InteractiveChat.CONFIG_GROUP)) {
+      textColor.set(null);
+    }
+  }
+
+  @Override
+  public Dimension render(Graphics2D graphics) {
+    final Widget input = client.getWidget(WidgetInfo.CHATBOX_INPUT);
+    if (input == null || input.isHidden()) {
+      return null;
+    }
+
+    completer.refresh();
+    final TitleCompleter.Suggestions suggestions = completer.suggestions();
+    if (suggestions.isEmpty()) {
+      return null;
+    }
+
+    final FontMetrics metrics = graphics.getFontMetrics();
+    final int lineHeight = metrics.getHeight();
+    int width = 0;
+    for (int i = 0; i < suggestions.size(); i++) {
+      width = Math.max(width, metrics.stringWidth(suggestions.title(i)));
+    }
+
+    final Rectangle inputBounds = input.getBounds();
+    final int height = suggestions.size() * lineHeight + PADDING * 2;
+    final int x = inputBounds.x;
+    final int y = inputBounds.y - height;
+
+    Color textColor = this.textColor.get();
+    if (textColor == null) {
+      textColor = config.textColor();
+      this.textColor.compareAndSet(null, textColor);
+    }
+
+    graphics.setColor(BACKGROUND_COLOR);
+    graphics.fillRect(x, y, width + PADDING * 2, height);
+
+    for (int i = 0; i < suggestions.size(); i++) {
+      graphics.setColor(i == 0 ? textColor : SUGGESTION_COLOR);
+      graphics.drawString(suggestions.title(i), x + PADDING, y + PADDING + i * lineHeight + metrics.getAscent());
+    }
+    return null;
+  }
+}
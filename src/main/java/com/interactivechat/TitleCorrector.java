@@ -0,0 +1,259 @@
+/*
+
+Copyright (c) 2021, Richard Cane
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package com.interactivechat;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A BK-tree over the dictionary's titles for finding the one closest to a
+ * misspelled term, by Levenshtein distance ignoring case.
+ *
+ * Children are stored per node sorted by their distance to it, so a search
+ * only visits the children whose distance is within reach of the best match
+ * so far. Immutable, so it can be shared between threads.
+ */
+final class TitleCorrector {
+  static final int MAX_DISTANCE = 2;
+
+  // node i is titles[i]; its children are childNodes[childOffsets[i],
+  // childOffsets[i + 1]), at distances childDistances[...] from it, ascending
+  private final String[] titles;
+  private final String[] keys;
+  private final int[] childOffsets;
+  private final int[] childDistances;
+  private final int[] childNodes;
+  private final int maxKeyLength;
+
+  private TitleCorrector(String[] titles, int[] childOffsets, int[] childDistances, int[] childNodes) {
+    this.titles = titles;
+    this.keys = new String[titles.length];
+    int maxKeyLength = 0;
+    for (int i = 0; i < titles.length; i++) {
+      keys[i] = lowerCase(titles[i]);
+      maxKeyLength = Math.max(maxKeyLength, keys[i].length());
+    }
+    this.maxKeyLength = maxKeyLength;
+    this.childOffsets = childOffsets;
+    this.childDistances = childDistances;
+    this.childNodes = childNodes;
+  }
+
+  int size() {
+    return titles.length;
+  }
+
+  /**
+   * Returns the title closest to {@code term}, or null if none is close
+   * enough. Short terms allow fewer edits, since two edits can turn most
+   * four letter words into another.
+   */
+  String correct(String term) {
+    if (titles.length == 0) {
+      return null;
+    }
+
+    final String key = lowerCase(term.trim());
+    final int maxDistance = Math.min(MAX_DISTANCE, key.length() / 4);
+
+    int best = -1;
+    int bestDistance = maxDistance + 1;
+    final int[] previous = new int[maxKeyLength + 1];
+    final int[] current = new int[maxKeyLength + 1];
+    final int[] stack = new int[titles.length];
+    int depth = 0;
+    stack[depth++] = 0;
+    while (depth > 0) {
+      final int node = stack[--depth];
+      final int distance = distance(key, keys[node], previous, current);
+      if (distance < bestDistance || (distance == bestDistance && best != -1 && node < best)) {
+        best = node;
+        bestDistance = distance;
+        if (distance == 0) {
+          break;
+        }
+      }
+
+      // only children at (distance - reach, distance + reach) can be closer
+      final int reach = Math.min(bestDistance, maxDistance);
+      for (int child = childOffsets[node]; child < childOffsets[node + 1]; child++) {
+        final int childDistance = childDistances[child];
+        if (childDistance > distance + reach) {
+          break;
+        }
+        if (childDistance >= distance - reach) {
+          stack[depth++] = childNodes[child];
+        }
+      }
+    }
+
+    return best == -1 ? null : titles[best];
+  }
+
+  /**
+   * Levenshtein distance between two lowercased strings.
+   */
+  static int distance(String a, String b) {
+    return distance(a, b, new int[b.length() + 1], new int[b.length() + 1]);
+  }
+
+  // rows must have room for b.length() + 1 entries
+  private static int distance(String a, String b, int[] previous, int[] current) {
+    final int aLength = a.length();
+    final int bLength = b.length();
+    for (int j = 0; j <= bLength; j++) {
+      previous[j] = j;
+    }
+
+    for (int i = 1; i <= aLength; i++) {
+      current[0] = i;
+      final char c = a.charAt(i - 1);
+      for (int j = 1; j <= bLength; j++) {
+        final int substitution = previous[j - 1] + (c == b.charAt(j - 1) ? 0 : 1);
+        current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+      }
+
+      final int[] swap = previous;
+      previous = current;
+      current = swap;
+    }
+    return previous[bLength];
+  }
+
+  static TitleCorrector build(TitlePrefixIndex index) {
+    final int count = index.size();
+    final String[] titles = new String[count];
+    final String[] keys = new String[count];
+    final List<List<int[]>> children = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      titles[i] = index.title(i);
+      keys[i] = lowerCase(titles[i]);
+      children.add(new ArrayList<>());
+    }
+
+    // insert in index order, the first title is the root
+    for (int title = 1; title < count; title++) {
+      int node = 0;
+      while (true) {
+        final int distance = distance(keys[title], keys[node]);
+        int next = -1;
+        for (int[] child : children.get(node)) {
+          if (child[0] == distance) {
+            next = child[1];
+            break;
+          }
+        }
+
+        if (next == -1) {
+          children.get(node).add(new int[]{distance, title});
+          break;
+        }
+        node = next;
+      }
+    }
+
+    int edgeCount = 0;
+    for (List<int[]> edges : children) {
+      edges.sort((a, b) -> Integer.compare(a[0], b[0]));
+      edgeCount += edges.size();
+    }
+
+    final int[] childOffsets = new int[count + 1];
+    final int[] childDistances = new int[edgeCount];
+    final int[] childNodes = new int[edgeCount];
+    int edge = 0;
+    for (int node = 0; node < count; node++) {
+      childOffsets[node] = edge;
+      for (int[] child : children.get(node)) {
+        childDistances[edge] = child[0];
+        childNodes[edge] = child[1];
+        edge++;
+      }
+    }
+    childOffsets[count] = edge;
+
+    return new TitleCorrector(titles, childOffsets, childDistances, childNodes);
+  }
+
+  // per char, the same way as the other title indexes
+  private static String lowerCase(String text) {
+    final char[] chars = new char[text.length()];
+    for (int i = 0; i < chars.length; i++) {
+      chars[i] = Character.toLowerCase(text.charAt(i));
+    }
+    return new String(chars);
+  }
+
+  /**
+   * Writes the tree, but not the titles; {@link #read} takes them from the
+   * prefix index it was built from.
+   */
+  void write(DataOutputStream out) throws IOException {
+    writeInts(out, childOffsets);
+    writeInts(out, childDistances);
+    writeInts(out, childNodes);
+  }
+
+  static TitleCorrector read(ByteBuffer in, TitlePrefixIndex index) {
+    final int[] childOffsets = readInts(in);
+    final int[] childDistances = readInts(in);
+    final int[] childNodes = readInts(in);
+    if (childOffsets.length != index.size() + 1 || childDistances.length != childNodes.length) {
+      throw new BufferUnderflowException();
+    }
+
+    final String[] titles = new String[index.size()];
+    for (int i = 0; i < titles.length; i++) {
+      titles[i] = index.title(i);
+    }
+    return new TitleCorrector(titles, childOffsets, childDistances, childNodes);
+  }
+
+  private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+    out.writeInt(values.length);
+    for (int value : values) {
+      out.writeInt(value);
+    }
+  }
+
+  private static int[] readInts(ByteBuffer in) {
+    final int length = in.getInt();
+    if (length < 0 || length > in.remaining() / 4) {
+      throw new BufferUnderflowException();
+    }
+
+    final int[] values = new int[length];
+    in.asIntBuffer().get(values);
+    in.position(in.position() + length * 4);
+    return values;
+  }
+}
@@ -0,0 +1,336 @@
+/*
+
+Copyright (c) 2021, Richard Cane
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package com.interactivechat;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.zip.CRC32;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import net.runelite.client.RuneLite;
+
+/**
+ * The wiki titles that are linked in chat without brackets, suggested while
+ * typing them and used to correct misspelled ones: the bundled list plus any
+ * in {@code .runelite/interactivechat/titles.txt}, one per line.
+ *
+ * The compiled {@link TitleAutomaton}, {@link TitlePrefixIndex} and
+ * {@link TitleCorrector} are cached next to that file and only rebuilt when
+ * either list changes. The cache is written to a temporary file and moved
+ * into place, and its payload checked against a CRC when it's read. Loading happens on the executor: as soon as linking or
+ * correcting is turned on, but for completing only once a term is typed.
+ * Until it's done the accessors return null.
+ */
+@Singleton
+class TitleDictionary {
+  private static final String BUNDLED_TITLES = "titles.txt";
+  private static final int MAGIC = 0x49435444;
+  private static final int FORMAT_VERSION = 4;
+
+  private final ScheduledExecutorService executor;
+  private final File userTitles;
+  private final File compiledTitles;
+
+  private volatile TitleAutomaton automaton;
+  private volatile TitlePrefixIndex index;
+  private volatile TitleCorrector corrector;
+  private volatile boolean linking;
+  private volatile boolean completing;
+  private volatile boolean correcting;
+  private boolean enabled;
+
+  @Inject
+  TitleDictionary(ScheduledExecutorService executor) {
+    this(executor, new File(RuneLite.RUNELITE_DIR, "interactivechat"));
+  }
+
+  TitleDictionary(ScheduledExecutorService executor, File directory) {
+    this.executor = executor;
+    this.userTitles = new File(directory, "titles.txt");
+    this.compiledTitles = new File(directory, "titles.bin");
+  }
+
+  /**
+   * Returns the automaton, or null while it's loading or linking is off.
+   */
+  TitleAutomaton automaton() {
+    return linking ? automaton : null;
+  }
+
+  /**
+   * Returns the prefix index, or null while it's loading or nothing needs it.
+   */
+  TitlePrefixIndex index() {
+    return index;
+  }
+
+  /**
+   * Returns the prefix index to complete a typed term with, starting to load
+   * it if it's the first one. Null while it's loading or completing is off.
+   */
+  TitlePrefixIndex completionIndex() {
+    if (!completing) {
+      return null;
+    }
+
+    final TitlePrefixIndex index = this.index;
+    if (index == null) {
+      load();
+    }
+    return index;
+  }
+
+  /**
+   * Returns the corrector, or null while it's loading or correcting is off.
+   */
+  TitleCorrector corrector() {
+    return correcting ? corrector : null;
+  }
+
+  void update(boolean linking, boolean completing, boolean correcting) {
+    this.linking = linking;
+    this.completing = completing;
+    this.correcting = correcting;
+    if (linking || correcting) {
+      load();
+    } else if (!completing) {
+      unload();
+    }
+  }
+
+  private synchronized void load() {
+    if (enabled) {
+      return;
+    }
+
+    enabled = true;
+    executor.execute(() -> {
+      Loaded loaded = null;
+      try {
+        loaded = loadTitles();
+      } catch (RuntimeException e) {
+        // left unloaded, and tried again by the next config change or typed term
+      }
+
+      synchronized (this) {
+        if (!enabled) {
+          return;
+        }
+
+        if (loaded == null) {
+          enabled = false;
+          return;
+        }
+        automaton = loaded.automaton;
+        index = loaded.index;
+        corrector = loaded.corrector;
+      }
+    });
+  }
+
+  synchronized void unload() {
+    linking = false;
+    completing = false;
+    correcting = false;
+    enabled = false;
+    automaton = null;
+    index = null;
+    corrector = null;
+  }
+
+  Loaded loadTitles() {
+    final byte[] bundled = readBundled();
+    final byte[] user = readUser();
+
+    final CRC32 crc = new CRC32();
+    crc.update(bundled);
+    crc.update(user);
+    final long sourceStamp = crc.getValue() | (long) bundled.length << 32;
+
+    final Loaded compiled = readCompiled(sourceStamp);
+    if (compiled != null) {
+      return compiled;
+    }
+
+    final List<String> titles = new ArrayList<>();
+    addTitles(titles, bundled);
+    addTitles(titles, user);
+    final TitlePrefixIndex index = TitlePrefixIndex.build(titles);
+    final Loaded built = new Loaded(TitleAutomaton.build(titles), index, TitleCorrector.build(index));
+    writeCompiled(built, sourceStamp);
+    return built;
+  }
+
+  private static void addTitles(List<String> titles, byte[] source) {
+    for (String line : new String(source, StandardCharsets.UTF_8).split("\n")) {
+      final String title = line.trim();
+      if (!title.isEmpty() && !title.startsWith("#")) {
+        titles.add(title);
+      }
+    }
+  }
+
+  private byte[] readBundled() {
+    try (InputStream in = TitleDictionary.class.getResourceAsStream(BUNDLED_TITLES)) {
+      if (in == null) {
+        return new byte[0];
+      }
+
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      final byte[] buffer = new byte[8192];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+      return out.toByteArray();
+    } catch (IOException e) {
+      return new byte[0];
+    }
+  }
+
+  private byte[] readUser() {
+    if (!userTitles.isFile()) {
+      return new byte[0];
+    }
+
+    try {
+      return Files.readAllBytes(userTitles.toPath());
+    } catch (IOException e) {
+      return new byte[0];
+    }
+  }
+
+  // null if it's missing, damaged, or from another version or other titles.
+  // A damaged one is deleted, so it's rebuilt even if writing it again fails
+  private Loaded readCompiled(long sourceStamp) {
+    if (!compiledTitles.isFile()) {
+      return null;
+    }
+
+    try {
+      final ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(compiledTitles.toPath()));
+      if (in.getInt() != MAGIC || in.getInt() != FORMAT_VERSION || in.getLong() != sourceStamp) {
+        return null;
+      }
+
+      final int length = in.getInt();
+      final long checksum = in.getLong();
+      if (length != in.remaining()) {
+        compiledTitles.delete();
+        return null;
+      }
+      final CRC32 crc = new CRC32();
+      crc.update(in.array(), in.position(), length);
+      if (crc.getValue() != checksum) {
+        compiledTitles.delete();
+        return null;
+      }
+
+      final TitleAutomaton automaton = TitleAutomaton.read(in);
+      final TitlePrefixIndex index = TitlePrefixIndex.read(in);
+      return new Loaded(automaton, index, TitleCorrector.read(in, index));
+    } catch (IOException | RuntimeException e) {
+      // unreadable, or passed the checksum but not the readers
+      compiledTitles.delete();
+      return null;
+    }
+  }
+
+  private void writeCompiled(Loaded loaded, long sourceStamp) {
+    final File directory = compiledTitles.getParentFile();
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      return;
+    }
+
+    File temporary = null;
+    try {
+      final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+      try (DataOutputStream out = new DataOutputStream(payload)) {
+        loaded.automaton.write(out);
+        loaded.index.write(out);
+        loaded.corrector.write(out);
+      }
+      final byte[] bytes = payload.toByteArray();
+      final CRC32 crc = new CRC32();
+      crc.update(bytes);
+
+      // in the same directory, so it can be moved over the old one in one step
+      temporary = File.createTempFile("titles", ".tmp", directory);
+      final FileOutputStream file = new FileOutputStream(temporary);
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(sourceStamp);
+        out.writeInt(bytes.length);
+        out.writeLong(crc.getValue());
+        out.write(bytes);
+        out.flush();
+        file.getFD().sync();
+      }
+
+      try {
+        Files.move(temporary.toPath(), compiledTitles.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temporary.toPath(), compiledTitles.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    } catch (IOException e) {
+      // built again on the next load
+    } finally {
+      if (temporary != null) {
+        temporary.delete();
+      }
+    }
+  }
+
+  static final class Loaded {
+    final TitleAutomaton automaton;
+    final TitlePrefixIndex index;
+    final TitleCorrector corrector;
+
+    Loaded(TitleAutomaton automaton, TitlePrefixIndex index, TitleCorrector corrector) {
+      this.automaton = automaton;
+      this.index = index;
+      this.corrector = corrector;
+    }
+  }
+}
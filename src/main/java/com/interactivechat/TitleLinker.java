@@ -0,0 +1,130 @@
+/*
+
+Copyright (c) 2021, Richard Cane
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package com.interactivechat;
+
+import java.util.Arrays;
+
+/**
+ * Finds dictionary titles in the plain spans of a tokenized message in one
+ * pass over its words. Where titles overlap, the leftmost wins, then the
+ * longest.
+ *
+ * Keeps its scratch arrays between messages, so each thread needs its own.
+ */
+class TitleLinker {
+  private int[] wordStarts = new int[32];
+  private int[] wordEnds = new int[32];
+  // the longest title, in words, starting at each word
+  private int[] longest = new int[32];
+
+  /**
+   * Copies {@code spans} into {@code linked}, splitting plain spans around the
+   * titles in them, and returns the number of titles found.
+   */
+  int link(TitleAutomaton automaton, CharSequence text, SpanBuffer spans, SpanBuffer linked) {
+    linked.clear();
+
+    int found = 0;
+    final int spanCount = spans.size();
+    for (int span = 0; span < spanCount; span++) {
+      final int start = spans.start(span);
+      final int end = spans.end(span);
+      if (spans.isBracketed(span)) {
+        linked.add(start, end, true);
+      } else {
+        found += linkPlain(automaton, text, start, end, linked);
+      }
+    }
+    return found;
+  }
+
+  private int linkPlain(TitleAutomaton automaton, CharSequence text, int start, int end, SpanBuffer linked) {
+    int words = 0;
+    int state = 0;
+    int i = start;
+    while (i < end) {
+      boolean joined = true;
+      while (i < end && !TitleAutomaton.isWordChar(text.charAt(i))) {
+        joined &= TitleAutomaton.isJoiner(text.charAt(i));
+        i++;
+      }
+      if (i == end) {
+        break;
+      }
+
+      final int wordStart = i;
+      while (i < end && TitleAutomaton.isWordChar(text.charAt(i))) {
+        i++;
+      }
+
+      if (words == longest.length) {
+        wordStarts = Arrays.copyOf(wordStarts, words * 2);
+        wordEnds = Arrays.copyOf(wordEnds, words * 2);
+        longest = Arrays.copyOf(longest, words * 2);
+      }
+      wordStarts[words] = wordStart;
+      wordEnds[words] = i;
+      longest[words] = 0;
+
+      state = automaton.next(joined ? state : 0, automaton.wordId(text, wordStart, i));
+      for (int title = automaton.output(state); title != -1; title = automaton.nextOutput(title)) {
+        final int length = automaton.titleLength(title);
+        final int first = words - length + 1;
+        if (length > longest[first]) {
+          longest[first] = length;
+        }
+      }
+      words++;
+    }
+
+    int found = 0;
+    int plainStart = start;
+    for (int word = 0; word < words; ) {
+      final int length = longest[word];
+      if (length == 0) {
+        word++;
+        continue;
+      }
+
+      final int titleStart = wordStarts[word];
+      final int titleEnd = wordEnds[word + length - 1];
+      if (titleStart > plainStart) {
+        linked.add(plainStart, titleStart, false);
+      }
+      linked.addLinked(titleStart, titleEnd);
+      plainStart = titleEnd;
+      found++;
+      word += length;
+    }
+
+    if (plainStart < end) {
+      linked.add(plainStart, end, false);
+    }
+    return found;
+  }
+}
@@ -0,0 +1,207 @@
+/*
+
+Copyright (c) 2021, Richard Cane
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package com.interactivechat;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dictionary titles sorted by their lowercased form, for finding every title
+ * that starts with what's been typed so far. Lookups are a binary search over
+ * packed chars and don't allocate.
+ *
+ * Immutable, so it can be shared between threads.
+ */
+final class TitlePrefixIndex {
+  private static final AtomicInteger GENERATIONS = new AtomicInteger();
+
+  // lowercased titles, sorted, each at keys[offsets[i], offsets[i + 1])
+  private final char[] keys;
+  private final int[] offsets;
+  // the same titles as written in the list
+  private final String[] titles;
+  // tells positions in this index apart from those in one loaded before it
+  private final int generation = GENERATIONS.incrementAndGet();
+
+  private TitlePrefixIndex(char[] keys, int[] offsets, String[] titles) {
+    this.keys = keys;
+    this.offsets = offsets;
+    this.titles = titles;
+  }
+
+  int size() {
+    return titles.length;
+  }
+
+  /**
+   * Never 0, and different for every index built or read.
+   */
+  int generation() {
+    return generation;
+  }
+
+  String title(int index) {
+    return titles[index];
+  }
+
+  /**
+   * Returns the first title starting with {@code text[start, end)}, ignoring
+   * case, or -1 if there is none. The rest follow it in order.
+   */
+  int first(CharSequence text, int start, int end) {
+    int low = 0;
+    int high = titles.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (compareToPrefix(mid, text, start, end) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+
+    return low < titles.length && startsWith(low, text, start, end) ? low : -1;
+  }
+
+  /**
+   * Returns the title equal to {@code text[start, end)}, ignoring case, or -1
+   * if there is none.
+   */
+  int find(CharSequence text, int start, int end) {
+    final int index = first(text, start, end);
+    return index != -1 && offsets[index + 1] - offsets[index] == end - start ? index : -1;
+  }
+
+  boolean startsWith(int index, CharSequence text, int start, int end) {
+    return compareToPrefix(index, text, start, end) == 0;
+  }
+
+  // compares a title, cut to the prefix's length, to the prefix
+  private int compareToPrefix(int index, CharSequence text, int start, int end) {
+    final int offset = offsets[index];
+    final int length = offsets[index + 1] - offset;
+    final int prefixLength = end - start;
+    for (int i = 0; i < Math.min(length, prefixLength); i++) {
+      final int diff = keys[offset + i] - Character.toLowerCase(text.charAt(start + i));
+      if (diff != 0) {
+        return diff;
+      }
+    }
+    return length < prefixLength ? -1 : 0;
+  }
+
+  static TitlePrefixIndex build(Iterable<String> titles) {
+    // first spelling wins
+    final Map<String, String> byKey = new LinkedHashMap<>();
+    for (String title : titles) {
+      final String trimmed = title.trim();
+      byKey.putIfAbsent(lowerCase(trimmed), trimmed);
+    }
+
+    final List<String> sortedKeys = new ArrayList<>(byKey.keySet());
+    Collections.sort(sortedKeys);
+
+    final StringBuilder keys = new StringBuilder();
+    final int[] offsets = new int[sortedKeys.size() + 1];
+    final String[] sortedTitles = new String[sortedKeys.size()];
+    for (int i = 0; i < sortedKeys.size(); i++) {
+      final String key = sortedKeys.get(i);
+      offsets[i] = keys.length();
+      keys.append(key);
+      sortedTitles[i] = byKey.get(key);
+    }
+    offsets[sortedKeys.size()] = keys.length();
+
+    return new TitlePrefixIndex(keys.toString().toCharArray(), offsets, sortedTitles);
+  }
+
+  // per char, the same way prefixes are compared
+  private static String lowerCase(String text) {
+    final char[] chars = new char[text.length()];
+    for (int i = 0; i < chars.length; i++) {
+      chars[i] = Character.toLowerCase(text.charAt(i));
+    }
+    return new String(chars);
+  }
+
+  void write(DataOutputStream out) throws IOException {
+    out.writeInt(titles.length);
+    for (String title : titles) {
+      out.writeUTF(title);
+    }
+  }
+
+  static TitlePrefixIndex read(ByteBuffer in) {
+    final int count = in.getInt();
+    if (count < 0 || count > in.remaining() / 2) {
+      throw new BufferUnderflowException();
+    }
+
+    final String[] titles = new String[count];
+    final StringBuilder keys = new StringBuilder();
+    final int[] offsets = new int[count + 1];
+    for (int i = 0; i < count; i++) {
+      titles[i] = readUtf(in);
+      offsets[i] = keys.length();
+      for (int c = 0; c < titles[i].length(); c++) {
+        keys.append(Character.toLowerCase(titles[i].charAt(c)));
+      }
+    }
+    offsets[count] = keys.length();
+
+    return new TitlePrefixIndex(keys.toString().toCharArray(), offsets, titles);
+  }
+
+  // the reading half of DataOutputStream.writeUTF, for titles without
+  // supplementary characters
+  private static String readUtf(ByteBuffer in) {
+    final int length = in.getShort() & 0xffff;
+    final char[] chars = new char[length];
+    int count = 0;
+    final int end = in.position() + length;
+    while (in.position() < end) {
+      final int b = in.get() & 0xff;
+      if (b < 0x80) {
+        chars[count++] = (char) b;
+      } else if ((b & 0xe0) == 0xc0) {
+        chars[count++] = (char) (((b & 0x1f) << 6) | (in.get() & 0x3f));
+      } else {
+        chars[count++] = (char) (((b & 0x0f) << 12) | ((in.get() & 0x3f) << 6) | (in.get() & 0x3f));
+      }
+    }
+    return new String(chars, 0, count);
+  }
+}
@@ -0,0 +1,62 @@
+/*
+
+Copyright (c) 2021, Richard Cane
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package com.interactivechat;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The title and opening text of the wiki page a keyword leads to.
+ */
+@Getter
+@RequiredArgsConstructor
+class WikiPreview {
+  private final String title;
+  private final String summary;
+  // a missing page is looked up again after a while, in case it's been written
+  private final long expiresAt;
+
+  WikiPreview(String title, String summary) {
+    this(title, summary, Long.MAX_VALUE);
+  }
+
+  /**
+   * The wiki has no page for the term, as of {@code expiresAt}.
+   */
+  static WikiPreview missing(long expiresAt) {
+    return new WikiPreview("", "", expiresAt);
+  }
+
+  boolean isMissing() {
+    return title.isEmpty();
+  }
+
+  boolean isExpired(long now) {
+    return now >= expiresAt;
+  }
+}
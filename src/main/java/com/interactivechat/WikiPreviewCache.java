@@ -0,0 +1,280 @@
+/*
+
+Copyright (c) 2021, Richard Cane
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package com.interactivechat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import net.runelite.client.RuneLite;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Looks up {@link WikiPreview}s for keywords. Lookups go to a bounded
+ * in-memory LRU, then to a file cache in the RuneLite directory, and only then
+ * to the wiki's API, which searches for the keyword and returns the plain text
+ * intro of the best match. Both caches are LRUs, and a keyword without a page
+ * is looked up again once a day.
+ *
+ * {@link #get(String)} never blocks. {@link #fetch(String)} reads the disk on
+ * the executor and makes the request with OkHttp's async dispatcher.
+ */
+@Singleton
+class WikiPreviewCache {
+  private static final int MAX_ENTRIES = 128;
+  private static final int MAX_DISK_ENTRIES = 1024;
+  private static final long MISSING_TTL_MILLIS = TimeUnit.DAYS.toMillis(1);
+  private static final int SUMMARY_SENTENCES = 2;
+
+  private final OkHttpClient okHttpClient;
+  private final ScheduledExecutorService executor;
+  private final HttpUrl wikiBase;
+  private final File cacheDir;
+
+  private final Map<String, WikiPreview> previews = new BoundedMap<>();
+  private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+  @Inject
+  WikiPreviewCache(OkHttpClient okHttpClient, ScheduledExecutorService executor) {
+    this(okHttpClient, executor, LinkProvider.WIKI_BASE, new File(RuneLite.RUNELITE_DIR, "interactivechat/wiki"));
+  }
+
+  WikiPreviewCache(OkHttpClient okHttpClient, ScheduledExecutorService executor, HttpUrl wikiBase, File cacheDir) {
+    this.okHttpClient = okHttpClient;
+    this.executor = executor;
+    this.wikiBase = wikiBase;
+    this.cacheDir = cacheDir;
+  }
+
+  /**
+   * Returns the preview if it's in memory, or null.
+   */
+  WikiPreview get(String term) {
+    final String key = key(term);
+    synchronized (previews) {
+      final WikiPreview preview = previews.get(key);
+      if (preview != null && preview.isMissing() && preview.isExpired(System.currentTimeMillis())) {
+        previews.remove(key);
+        return null;
+      }
+      return preview;
+    }
+  }
+
+  /**
+   * Starts loading the preview unless it's already in memory or on its way.
+   */
+  void fetch(String term) {
+    final String key = key(term);
+    if (get(key) != null || !pending.add(key)) {
+      return;
+    }
+
+    executor.execute(() -> {
+      final WikiPreview cached = readFromDisk(key);
+      if (cached != null) {
+        complete(key, cached);
+      } else {
+        request(key);
+      }
+    });
+  }
+
+  void clear() {
+    synchronized (previews) {
+      previews.clear();
+    }
+  }
+
+  private void request(String key) {
+    final HttpUrl url = wikiBase.newBuilder()
+        .addPathSegment("api.php")
+        .addQueryParameter("action", "query")
+        .addQueryParameter("format", "json")
+        .addQueryParameter("formatversion", "2")
+        .addQueryParameter("generator", "search")
+        .addQueryParameter("gsrsearch", key)
+        .addQueryParameter("gsrlimit", "1")
+        .addQueryParameter("prop", "extracts")
+        .addQueryParameter("exintro", "1")
+        .addQueryParameter("explaintext", "1")
+        .addQueryParameter("exsentences", String.valueOf(SUMMARY_SENTENCES))
+        .addQueryParameter("redirects", "1")
+        .build();
+
+    okHttpClient.newCall(new Request.Builder().url(url).build()).enqueue(new Callback() {
+      @Override
+      public void onFailure(Call call, IOException e) {
+        // try again on the next hover
+        pending.remove(key);
+      }
+
+      @Override
+      public void onResponse(Call call, Response response) throws IOException {
+        try (ResponseBody body = response.body()) {
+          if (!response.isSuccessful() || body == null) {
+            pending.remove(key);
+            return;
+          }
+
+          final WikiPreview preview = parse(body.string());
+          writeToDisk(key, preview);
+          complete(key, preview);
+        } catch (RuntimeException e) {
+          // not the json we expected
+          pending.remove(key);
+        }
+      }
+    });
+  }
+
+  private void complete(String key, WikiPreview preview) {
+    synchronized (previews) {
+      previews.put(key, preview);
+    }
+    pending.remove(key);
+  }
+
+  static WikiPreview parse(String json) {
+    // a search without results has no query at all
+    final JsonObject query = new JsonParser().parse(json).getAsJsonObject().getAsJsonObject("query");
+    if (query == null || !query.has("pages")) {
+      return WikiPreview.missing(System.currentTimeMillis() + MISSING_TTL_MILLIS);
+    }
+
+    final JsonArray pages = query.get("pages").getAsJsonArray();
+    if (pages.size() == 0) {
+      return WikiPreview.missing(System.currentTimeMillis() + MISSING_TTL_MILLIS);
+    }
+
+    final JsonObject page = pages.get(0).getAsJsonObject();
+    final JsonElement extract = page.get("extract");
+    // already plain text, but with the paragraphs on their own lines
+    final String summary = extract == null ? "" : extract.getAsString().replaceAll("\\s+", " ").trim();
+    return new WikiPreview(page.get("title").getAsString(), summary);
+  }
+
+  private WikiPreview readFromDisk(String key) {
+    final File file = new File(cacheDir, fileName(key));
+    if (!file.isFile()) {
+      return null;
+    }
+
+    try {
+      final String[] lines = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).split("\n", 2);
+      final long now = System.currentTimeMillis();
+      if (lines[0].isEmpty()) {
+        // left as it was written, so it expires
+        final WikiPreview missing = WikiPreview.missing(file.lastModified() + MISSING_TTL_MILLIS);
+        return missing.isExpired(now) ? null : missing;
+      }
+
+      // the disk cache evicts the least recently used
+      file.setLastModified(now);
+      return new WikiPreview(lines[0], lines.length > 1 ? lines[1] : "");
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private void writeToDisk(String key, WikiPreview preview) {
+    if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+      return;
+    }
+
+    try {
+      final String contents = preview.getTitle() + "\n" + preview.getSummary();
+      Files.write(new File(cacheDir, fileName(key)).toPath(), contents.getBytes(StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      // the memory cache still has it
+      return;
+    }
+
+    final File[] files = cacheDir.listFiles();
+    if (files != null && files.length > MAX_DISK_ENTRIES) {
+      Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+      for (int i = 0; i < files.length - MAX_DISK_ENTRIES; i++) {
+        files[i].delete();
+      }
+    }
+  }
+
+  private static String key(String term) {
+    return term.toLowerCase(Locale.ROOT);
+  }
+
+  private static String fileName(String key) {
+    try {
+      final byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+      final StringBuilder name = new StringBuilder(digest.length * 2);
+      for (byte b : digest) {
+        name.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+      }
+      return name.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static class BoundedMap<K, V> extends LinkedHashMap<K, V> {
+    BoundedMap() {
+      super(16, 0.75f, true);
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+      return size() > MAX_ENTRIES;
+    }
+  }
+}
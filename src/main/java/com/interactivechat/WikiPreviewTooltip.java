@@ -0,0 +1,128 @@
+/*
+
+Copyright (c) 2021, Richard Cane
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package com.interactivechat;
+
+import java.awt.Color;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import net.runelite.client.ui.overlay.tooltip.Tooltip;
+import net.runelite.client.ui.overlay.tooltip.TooltipManager;
+import net.runelite.client.util.ColorUtil;
+import net.runelite.client.util.Text;
+
+/**
+ * Shows the wiki preview of the hovered keyword once the mouse has rested on
+ * it for a moment. Called from the overlay every frame, so it only ever reads
+ * what the {@link WikiPreviewCache} already has in memory.
+ */
+@Singleton
+class WikiPreviewTooltip {
+  private static final long DWELL_MILLIS = 400;
+  private static final int LINE_LENGTH = 50;
+  private static final Color TITLE_COLOR = new Color(255, 152, 31);
+
+  private final WikiPreviewCache previews;
+  private final TooltipManager tooltipManager;
+
+  private String term;
+  private long hoverStart;
+  private boolean requested;
+
+  private WikiPreview shown;
+  private Tooltip tooltip;
+
+  @Inject
+  WikiPreviewTooltip(WikiPreviewCache previews, TooltipManager tooltipManager) {
+    this.previews = previews;
+    this.tooltipManager = tooltipManager;
+  }
+
+  /**
+   * @param hoveredTerm the keyword under the mouse, or null
+   */
+  void update(String hoveredTerm) {
+    if (hoveredTerm == null) {
+      term = null;
+      return;
+    }
+
+    final long now = System.currentTimeMillis();
+    if (!hoveredTerm.equals(term)) {
+      term = hoveredTerm;
+      hoverStart = now;
+      requested = false;
+    }
+
+    if (now - hoverStart < DWELL_MILLIS) {
+      return;
+    }
+
+    final WikiPreview preview = previews.get(term);
+    if (preview == null) {
+      if (!requested) {
+        requested = true;
+        previews.fetch(term);
+      }
+      return;
+    }
+
+    if (preview.isMissing()) {
+      return;
+    }
+
+    if (preview != shown) {
+      shown = preview;
+      tooltip = new Tooltip(format(preview));
+    }
+    tooltipManager.add(tooltip);
+  }
+
+  private static String format(WikiPreview preview) {
+    final StringBuilder text = new StringBuilder(ColorUtil.wrapWithColorTag(Text.escapeJagex(preview.getTitle()), TITLE_COLOR));
+
+    int lineLength = LINE_LENGTH;
+    for (String word : preview.getSummary().split(" ")) {
+      if (word.isEmpty()) {
+        continue;
+      }
+
+      if (lineLength + word.length() >= LINE_LENGTH) {
+        text.append("</br>");
+        lineLength = 0;
+      } else {
+        text.append(' ');
+        lineLength++;
+      }
+      text.append(Text.escapeJagex(word));
+      lineLength += word.length();
+    }
+    return text.toString();
+  }
+}
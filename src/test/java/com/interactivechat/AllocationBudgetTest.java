@@ -0,0 +1,317 @@
+/*
+
+Copyright (c) 2021, Richard Cane
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package com.interactivechat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.awt.Canvas;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.event.InputEvent;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Constructor;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import net.runelite.api.ChatMessageType;
+import net.runelite.api.Client;
+import net.runelite.api.ScriptID;
+import net.runelite.api.events.ChatMessage;
+import net.runelite.api.events.ScriptPostFired;
+import net.runelite.api.widgets.WidgetInfo;
+
+import com.sun.management.ThreadMXBean;
+
+/**
+ * Checks how many bytes the render, hit test, click and chat message paths
+ * allocate per call against a budget for each, using stub client objects.
+ * Every path is warmed up first and then measured over a few rounds, keeping
+ * the lowest, so it's measured running compiled as it would a while into a
+ * session.
+ *
+ * Runs in its own allocationTest task with escape analysis off, so nothing
+ * here relies on the JIT removing an allocation, and the plain test task
+ * leaves it out. Budgets are fixed. A hovered frame's are mostly Java2D's
+ * translucent fill, about 1.7 KB on Java 8 and 17, and a click's mostly
+ * building the link's URL.
+ */
+public class AllocationBudgetTest {
+  private static final int CHAT_X = 7;
+  private static final int CHAT_Y = 345;
+  private static final int CHAT_WIDTH = 486;
+  private static final int CHAT_HEIGHT = 130;
+  private static final int NAME_WIDTH = 40;
+  private static final int WARMUP_CALLS = 50000;
+  private static final int MEASURED_CALLS = 20000;
+  private static final int ROUNDS = 5;
+  private static final int HOVERED_FRAME_BUDGET = 1792;
+
+  // fits the chatbox, so it isn't scrolled, and each term fits on its line
+  private static final String[] LINES = {
+      "Selling [dragon scimitar] and [abyssal whip] cheap",
+      "just chatting here, nothing to see",
+      "anyone killed [Zulrah] today?",
+      "buying [rune platebody] and [rune platelegs] for a set",
+  };
+
+  private final Stubs.StubClient stubClient = new Stubs.StubClient();
+  private final Client client = stubClient.client;
+  private final InteractiveChatConfig config = Stubs.config();
+  private final PluginMetrics metrics = new PluginMetrics();
+  private final TitleDictionary titles = new TitleDictionary(null);
+  private final MessageSpanStore spanStore = new MessageSpanStore(256);
+  private final MessageLayoutCache layoutCache = new MessageLayoutCache(new GlyphWidthCache(), titles, spanStore, metrics);
+  private final MatchManager matchManager = new MatchManager();
+  private final HoverState hoverState = new HoverState();
+  private final Canvas canvas = new Canvas();
+  private final Graphics2D graphics = new BufferedImage(765, 503, BufferedImage.TYPE_INT_ARGB).createGraphics();
+  private final ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+  private final InteractiveChatPlugin plugin = new InteractiveChatPlugin();
+  private final StubWidget chatLines = new StubWidget(WidgetInfo.CHATBOX_MESSAGE_LINES.getId(), CHAT_X, CHAT_Y, CHAT_WIDTH, CHAT_HEIGHT);
+  private final Point outside = new Point(CHAT_X + CHAT_WIDTH / 2, CHAT_Y - 100);
+
+  private InteractiveChatOverlay overlay;
+  private InteractiveChatOverlayMouseListener mouseListener;
+
+  // spots under the mouse
+  private Point term;
+  private String termName;
+  private Point sameTerm;
+  private Point otherTerm;
+  private Point plainText;
+  private Point plainText2;
+
+  @Before
+  public void before() throws ReflectiveOperationException {
+    overlay = new InteractiveChatOverlay(config, client, matchManager, layoutCache, new GlyphWidthCache(), hoverState, metrics, null);
+
+    final Constructor<InteractiveChatOverlayMouseListener> constructor = InteractiveChatOverlayMouseListener.class
+        .getDeclaredConstructor(MatchManager.class, HoverState.class, PluginMetrics.class, TitleDictionary.class,
+            LinkDispatcher.class);
+    constructor.setAccessible(true);
+    mouseListener = constructor.newInstance(matchManager, hoverState, metrics, titles,
+        new LinkDispatcher(url -> { }, Runnable::run));
+
+    // the worker isn't started, so messages are only queued
+    Stubs.inject(plugin, "config", config);
+    Stubs.inject(plugin, "parsePipeline", new ChatParsePipeline(null, null, spanStore, titles, metrics));
+
+    final StubWidget[] lines = new StubWidget[LINES.length];
+    for (int i = 0; i < lines.length; i++) {
+      lines[i] = new StubWidget(chatLines.id, NAME_WIDTH, i * InteractiveChat.CHATLINE_HEIGHT,
+          CHAT_WIDTH - NAME_WIDTH, InteractiveChat.CHATLINE_HEIGHT);
+      lines[i].index = i;
+      lines[i].text = LINES[i];
+      lines[i].font = Stubs.font();
+    }
+    chatLines.setChildren(lines);
+    stubClient.widgets.put(WidgetInfo.CHATBOX_MESSAGE_LINES, chatLines.widget);
+    overlay.onScriptPostFired(new ScriptPostFired(ScriptID.BUILD_CHATBOX));
+
+    locate();
+  }
+
+  @Test
+  public void renderRestingOnATerm() {
+    hover(term.x, term.y);
+    assertWithinBudget(HOVERED_FRAME_BUDGET, measure(i -> overlay.render(graphics)));
+  }
+
+  @Test
+  public void renderRestingAwayFromChat() {
+    hover(outside.x, outside.y);
+    assertWithinBudget(0, measure(i -> overlay.render(graphics)));
+  }
+
+  @Test
+  public void renderMovingWithinATerm() {
+    assertWithinBudget(HOVERED_FRAME_BUDGET, measure(i -> {
+      final Point point = i % 2 == 0 ? term : sameTerm;
+      hover(point.x, point.y);
+    }));
+  }
+
+  @Test
+  public void renderMovingOverTextWithoutTerms() {
+    assertWithinBudget(0, measure(i -> {
+      final Point point = i % 2 == 0 ? plainText : plainText2;
+      hover(point.x, point.y);
+    }));
+  }
+
+  // each term's snapshot is only built the first time it's hovered
+  @Test
+  public void renderMovingBetweenTerms() {
+    assertWithinBudget(HOVERED_FRAME_BUDGET, measure(i -> {
+      final Point point = i % 2 == 0 ? term : otherTerm;
+      hover(point.x, point.y);
+    }));
+  }
+
+  @Test
+  public void pointInBoundsHit() {
+    hover(term.x, term.y);
+    final Point hit = new Point(term);
+    assertWithinBudget(0, measure(i -> matchManager.pointInBounds(hit)));
+  }
+
+  @Test
+  public void pointInBoundsMiss() {
+    hover(term.x, term.y);
+    final Point miss = new Point(outside);
+    assertWithinBudget(0, measure(i -> matchManager.pointInBounds(miss)));
+  }
+
+  @Test
+  public void mousePressedAwayFromATerm() {
+    hover(term.x, term.y);
+    final MouseEvent press = press(outside, 0);
+    assertWithinBudget(0, measure(i -> mouseListener.mousePressed(press)));
+  }
+
+  @Test
+  public void mousePressedOnATerm() {
+    hover(term.x, term.y);
+    // clicks are far enough apart not to be debounced, so every one builds and queues its link
+    final MouseEvent[] presses = new MouseEvent[WARMUP_CALLS + MEASURED_CALLS * ROUNDS];
+    for (int i = 0; i < presses.length; i++) {
+      presses[i] = press(term, (long) i * LinkDispatcher.DEBOUNCE_MILLIS * 2);
+    }
+
+    // the titles aren't loaded, so the click builds a wiki search URL
+    assertWithinBudget(1024, measure(i -> mouseListener.mousePressed(presses[i])));
+  }
+
+  // the parse worker isn't counted, only the message the client thread queues for it
+  @Test
+  public void onChatMessagePlain() {
+    final ChatMessage plain = chatMessage(ChatMessageType.PUBLICCHAT, "just chatting here, nothing to see");
+    assertWithinBudget(32, measure(i -> plugin.onChatMessage(plain)));
+  }
+
+  @Test
+  public void onChatMessageLinked() {
+    final ChatMessage linked = chatMessage(ChatMessageType.PUBLICCHAT, "Selling [dragon scimitar] cheap");
+    assertWithinBudget(32, measure(i -> plugin.onChatMessage(linked)));
+  }
+
+  @Test
+  public void onChatMessageNotAPlayers() {
+    final ChatMessage ignored = chatMessage(ChatMessageType.GAMEMESSAGE, "Welcome to Old School RuneScape.");
+    assertWithinBudget(0, measure(i -> plugin.onChatMessage(ignored)));
+  }
+
+  // sweeps the mouse across the chat, noting what's under it
+  private void locate() {
+    for (int y = CHAT_Y + 2; y < CHAT_Y + LINES.length * InteractiveChat.CHATLINE_HEIGHT; y += InteractiveChat.CHATLINE_HEIGHT) {
+      for (int x = CHAT_X + NAME_WIDTH; x < CHAT_X + CHAT_WIDTH; x += 3) {
+        final MatchSnapshot hovered = hover(x, y);
+        if (hovered.isEmpty()) {
+          if (plainText == null) {
+            plainText = new Point(x, y);
+          } else if (plainText2 == null) {
+            plainText2 = new Point(x, y);
+          }
+          continue;
+        }
+
+        // one hitbox drawn per hovered frame
+        assertEquals(1, hovered.size());
+        if (term == null) {
+          term = new Point(x, y);
+          termName = hovered.term(0);
+        } else if (hovered.term(0).equals(termName)) {
+          if (sameTerm == null) {
+            sameTerm = new Point(x, y);
+          }
+        } else if (otherTerm == null) {
+          otherTerm = new Point(x, y);
+        }
+      }
+    }
+
+    if (otherTerm == null || sameTerm == null || plainText2 == null) {
+      throw new IllegalStateException("The chat lines don't lay out as expected");
+    }
+  }
+
+  private MatchSnapshot hover(int x, int y) {
+    hoverState.mouseMoved(x, y);
+    overlay.render(graphics);
+    return matchManager.getSnapshot();
+  }
+
+  private MouseEvent press(Point point, long when) {
+    return new MouseEvent(canvas, MouseEvent.MOUSE_PRESSED, when, InputEvent.BUTTON1_DOWN_MASK,
+        point.x, point.y, 1, false, MouseEvent.BUTTON1);
+  }
+
+  private static ChatMessage chatMessage(ChatMessageType type, String text) {
+    final ChatMessage message = new ChatMessage();
+    message.setType(type);
+    message.setName("Zezima");
+    message.setMessage(text);
+    return message;
+  }
+
+  // the fewest bytes allocated in any one round of MEASURED_CALLS calls
+  private long measure(Call call) {
+    for (int i = 0; i < WARMUP_CALLS; i++) {
+      call.run(i);
+    }
+
+    final long threadId = Thread.currentThread().getId();
+    long lowest = Long.MAX_VALUE;
+    int i = WARMUP_CALLS;
+    for (int round = 0; round < ROUNDS; round++) {
+      final long start = threads.getThreadAllocatedBytes(threadId);
+      for (final int end = i + MEASURED_CALLS; i < end; i++) {
+        call.run(i);
+      }
+      lowest = Math.min(lowest, threads.getThreadAllocatedBytes(threadId) - start);
+    }
+    return lowest;
+  }
+
+  // compares whole rounds, so even one object in a round counts
+  private static void assertWithinBudget(long budgetPerCall, long bytes) {
+    if (bytes > budgetPerCall * MEASURED_CALLS) {
+      fail(String.format("allocated %.2f B/call, budget %d B", (double) bytes / MEASURED_CALLS, budgetPerCall));
+    }
+  }
+
+  // called with a new index every time, from warmup through measuring
+  private interface Call {
+    void run(int i);
+  }
+}
@@ -0,0 +1,133 @@
+/*
+
+Copyright (c) 2021, Richard Cane
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package com.interactivechat;
+
+import java.util.Random;
+
+/**
+ * Deterministic chat messages resembling what a busy world produces.
+ */
+final class ChatCorpus {
+  static final String PLAIN = "plain";
+  static final String SINGLE_LINK = "single";
+  static final String SPAM = "spam";
+  static final String MULTI_LINK = "multi";
+  static final String MIXED = "mixed";
+
+  private static final String[] WORDS = {
+    "selling", "buying", "anyone", "want", "to", "trade", "for", "my", "at", "ge", "world", "301",
+    "lf", "team", "come", "quick", "price", "check", "gz", "on", "the", "drop", "lol", "ty", "pls",
+    "bank", "how", "much", "is", "a", "worth", "now", "going", "cheap", "offer", "each", "mate",
+  };
+
+  private static final String[] TERMS = {
+    "dragon scimitar", "abyssal whip", "twisted bow", "rune platebody", "bandos chestplate",
+    "saradomin godsword", "toxic blowpipe", "zulrah", "dragon slayer ii", "barrows gloves",
+    "amulet of fury", "prayer potion(4)", "shark", "granite maul", "fire cape", "cannonball",
+    "armadyl crossbow", "dragon   claws", " tanzanite fang ", "void knight top",
+  };
+
+  private ChatCorpus() {
+  }
+
+  static String[] messages(String kind, int count, int length, long seed) {
+    final Random random = new Random(seed);
+    final String[] messages = new String[count];
+    for (int i = 0; i < count; i++) {
+      messages[i] = message(kind.equals(MIXED) ? mixedKind(random) : kind, length, random);
+    }
+    return messages;
+  }
+
+  private static String mixedKind(Random random) {
+    final int roll = random.nextInt(100);
+    if (roll < 70) {
+      return PLAIN;
+    } else if (roll < 88) {
+      return SINGLE_LINK;
+    } else if (roll < 95) {
+      return MULTI_LINK;
+    }
+    return SPAM;
+  }
+
+  private static String message(String kind, int length, Random random) {
+    final StringBuilder builder = new StringBuilder(length + 32);
+    switch (kind) {
+      case SINGLE_LINK:
+        words(builder, length / 2, random);
+        builder.append(" [").append(term(random)).append("] ");
+        words(builder, length, random);
+        break;
+      case MULTI_LINK:
+        while (builder.length() < length) {
+          words(builder, builder.length() + 1 + random.nextInt(12), random);
+          builder.append(" [").append(term(random)).append(']');
+        }
+        break;
+      case SPAM:
+        while (builder.length() < length) {
+          switch (random.nextInt(5)) {
+            case 0:
+              builder.append("[[[").append(term(random)).append("]]]");
+              break;
+            case 1:
+              builder.append(" fffffffffffffffffffffffffffffffffffffffffffff");
+              break;
+            case 2:
+              builder.append("][][").append(WORDS[random.nextInt(WORDS.length)]);
+              break;
+            case 3:
+              builder.append(" <lt>").append(term(random)).append("<gt> ");
+              break;
+            default:
+              builder.append(" [").append(term(random)).append("] ");
+              break;
+          }
+        }
+        break;
+      default:
+        words(builder, length, random);
+        break;
+    }
+    return builder.toString();
+  }
+
+  private static void words(StringBuilder builder, int length, Random random) {
+    while (builder.length() < length) {
+      if (builder.length() > 0) {
+        builder.append(' ');
+      }
+      builder.append(WORDS[random.nextInt(WORDS.length)]);
+    }
+  }
+
+  private static String term(Random random) {
+    return TERMS[random.nextInt(TERMS.length)];
+  }
+}
@@ -0,0 +1,716 @@
+/*
+
+Copyright (c) 2021, Richard Cane
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package com.interactivechat;
+
+import java.awt.Canvas;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.event.InputEvent;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+import net.runelite.api.ChatMessageType;
+import net.runelite.api.Client;
+import net.runelite.api.FontTypeFace;
+import net.runelite.api.MessageNode;
+import net.runelite.api.ScriptID;
+import net.runelite.api.events.ChatMessage;
+import net.runelite.api.events.ScriptPostFired;
+import net.runelite.api.widgets.Widget;
+import net.runelite.api.widgets.WidgetInfo;
+import net.runelite.client.callback.ClientThread;
+import net.runelite.client.util.Text;
+
+import com.sun.management.ThreadMXBean;
+
+/**
+ * Replays a chat log through the plugin without a game client. Messages
+ * arrive through {@link InteractiveChatPlugin#onChatMessage}, the chatbox is
+ * rebuilt whenever messages are added or refreshed, and every frame the
+ * overlay renders while a scripted mouse sweeps across the chat lines,
+ * pausing, scrolling back and clicking now and then. Clicked links go to a
+ * stub browser that only counts them. Like the plugin, the overlay and mouse
+ * listener are only attached while a chat line has a term to hover.
+ *
+ * Reports message throughput, per-frame latency percentiles and allocation,
+ * and checks every hitbox against the original {@link LegacyLayout}, or against
+ * the client's wrapping in {@link ClientLayout} for a chat line with one of the
+ * {@link LegacyDifference}s. Exits with a non-zero status if any of them
+ * differ.
+ *
+ * <pre>
+ * ./gradlew replay [-Preplay.log=chat.txt] [-Preplay.messages=5000] [-Preplay.corpus=mixed]
+ * </pre>
+ *
+ * A log has one message per line, optionally as {@code TYPE<tab>name<tab>message}.
+ */
+public class ChatReplay {
+  private static final int CHAT_X = 7;
+  private static final int CHAT_Y = 345;
+  private static final int CHAT_WIDTH = 486;
+  private static final int CHAT_HEIGHT = 130;
+  private static final int HISTORY = 100;
+  private static final int CLICK_INTERVAL = 15;
+  private static final int MAX_DRAIN_FRAMES = 10000;
+
+  private static final String[] NAMES = {"Zezima", "Woox", "B0aty", "Mod Ash", "Lynx Titan", "Settled", "Sick Nerd"};
+
+  private final Stubs.StubClient stubClient = new Stubs.StubClient();
+  private final Client client = stubClient.client;
+  private final ReplayClientThread clientThread = new ReplayClientThread();
+  private final FontTypeFace font = Stubs.font();
+  private final InteractiveChatConfig config = Stubs.config();
+  private final PluginMetrics metrics = new PluginMetrics();
+  private final TitleDictionary titles = new TitleDictionary(null);
+  private final MessageSpanStore spanStore = new MessageSpanStore(HISTORY);
+  private final MessageLayoutCache layoutCache = new MessageLayoutCache(new GlyphWidthCache(), titles, spanStore, metrics);
+  private final MatchManager matchManager = new MatchManager();
+  private final HoverState hoverState = new HoverState();
+  private final Canvas canvas = new Canvas();
+  private final Graphics2D graphics = new BufferedImage(765, 503, BufferedImage.TYPE_INT_ARGB).createGraphics();
+
+  private final InteractiveChatPlugin plugin = new InteractiveChatPlugin();
+  private final ChatParsePipeline pipeline;
+  private final InteractiveChatOverlay overlay;
+  private final InteractiveChatOverlayMouseListener mouseListener;
+  private final LinkedLineCounter linkedLines = new LinkedLineCounter(client, spanStore);
+  private boolean attached;
+
+  private final StubWidget chatLines = new StubWidget(WidgetInfo.CHATBOX_MESSAGE_LINES.getId(), CHAT_X, CHAT_Y, CHAT_WIDTH, CHAT_HEIGHT);
+  private final Deque<ReplayMessageNode> history = new ArrayDeque<>();
+  private List<Match>[] expectedMatches;
+  private boolean chatDirty;
+  private int scrollBack;
+
+  private final Measurement measurement = new Measurement();
+  private long checkTime;
+  private long hoverChecks;
+  private long termHovers;
+  private long lineChecks;
+  private long termClicks;
+  private long missClicks;
+  private long detachedFrames;
+  private final List<String> opened = new ArrayList<>();
+  private long mismatches;
+  private final Map<LegacyDifference, Long> legacyDifferences = new EnumMap<>(LegacyDifference.class);
+
+  ChatReplay() throws ReflectiveOperationException {
+    // refreshing just marks the chatbox for rebuilding at the end of the frame
+    final ChatRefreshBatcher refreshBatcher = new ChatRefreshBatcher(client, clientThread, null) {
+      @Override
+      void queue(MessageNode messageNode) {
+        chatDirty = true;
+      }
+    };
+
+    pipeline = new ChatParsePipeline(clientThread, refreshBatcher, spanStore, titles, metrics);
+    overlay = new InteractiveChatOverlay(config, client, matchManager, layoutCache, new GlyphWidthCache(), hoverState, metrics, null);
+
+    final Constructor<InteractiveChatOverlayMouseListener> constructor = InteractiveChatOverlayMouseListener.class
+        .getDeclaredConstructor(MatchManager.class, HoverState.class, PluginMetrics.class, TitleDictionary.class,
+            LinkDispatcher.class);
+    constructor.setAccessible(true);
+    mouseListener = constructor.newInstance(matchManager, hoverState, metrics, titles,
+        new LinkDispatcher(opened::add, Runnable::run));
+
+    Stubs.inject(plugin, "config", config);
+    Stubs.inject(plugin, "parsePipeline", pipeline);
+    stubClient.widgets.put(WidgetInfo.CHATBOX_MESSAGE_LINES, chatLines.widget);
+  }
+
+  public static void main(String[] args) throws Exception {
+    String log = null;
+    String corpus = ChatCorpus.MIXED;
+    int messageCount = 5000;
+    for (String arg : args) {
+      if (arg.startsWith("--log=")) {
+        log = arg.substring("--log=".length());
+      } else if (arg.startsWith("--corpus=")) {
+        corpus = arg.substring("--corpus=".length());
+      } else if (arg.startsWith("--messages=")) {
+        messageCount = Integer.parseInt(arg.substring("--messages=".length()));
+      } else {
+        throw new IllegalArgumentException("Unknown argument " + arg);
+      }
+    }
+
+    final List<ChatMessage> messages = log != null
+        ? readLog(log)
+        : synthetic(ChatCorpus.messages(corpus, messageCount, 80, 42));
+
+    final ChatReplay replay = new ChatReplay();
+    replay.run(messages);
+    replay.report(messages.size(), System.out);
+    System.exit(replay.mismatches == 0 ? 0 : 1);
+  }
+
+  private static List<ChatMessage> readLog(String path) throws IOException {
+    final List<ChatMessage> messages = new ArrayList<>();
+    for (String line : Files.readAllLines(Paths.get(path), StandardCharsets.UTF_8)) {
+      if (line.isEmpty()) {
+        continue;
+      }
+
+      final String[] fields = line.split("\t", 3);
+      if (fields.length == 3) {
+        messages.add(chatMessage(ChatMessageType.valueOf(fields[0]), fields[1], fields[2]));
+      } else {
+        messages.add(chatMessage(ChatMessageType.PUBLICCHAT, NAMES[messages.size() % NAMES.length], line));
+      }
+    }
+    return messages;
+  }
+
+  private static List<ChatMessage> synthetic(String[] texts) {
+    final List<ChatMessage> messages = new ArrayList<>(texts.length);
+    for (int i = 0; i < texts.length; i++) {
+      messages.add(chatMessage(ChatMessageType.PUBLICCHAT, NAMES[i % NAMES.length], texts[i]));
+    }
+    return messages;
+  }
+
+  private static ChatMessage chatMessage(ChatMessageType type, String name, String text) {
+    final ChatMessage message = new ChatMessage();
+    message.setType(type);
+    message.setName(name);
+    message.setMessage(text);
+    return message;
+  }
+
+  void run(List<ChatMessage> messages) {
+    pipeline.start();
+    final Random random = new Random(7);
+    final long start = System.nanoTime();
+    try {
+      int next = 0;
+      int idleFrames = 0;
+      for (int frame = 0; next < messages.size() || idleFrames < 5; frame++) {
+        measurement.beginFrame();
+
+        // a message every other frame on average, in bursts
+        if (next < messages.size() && random.nextInt(4) == 0) {
+          final int burst = 1 + random.nextInt(3);
+          for (int i = 0; i < burst && next < messages.size(); i++) {
+            arrive(messages.get(next), next);
+            next++;
+          }
+        }
+
+        measurement.begin();
+        final boolean ranTasks = clientThread.runQueued();
+        measurement.end();
+
+        if (chatDirty) {
+          chatDirty = false;
+          rebuildChatbox();
+        }
+
+        scroll(frame);
+        moveMouse(frame);
+
+        if (attached) {
+          measurement.begin();
+          overlay.render(graphics);
+          measurement.end();
+        } else {
+          detachedFrames++;
+        }
+
+        final long checkStart = System.nanoTime();
+        checkHover();
+        checkTime += System.nanoTime() - checkStart;
+
+        if (attached && frame % CLICK_INTERVAL == 0) {
+          click(frame);
+        }
+
+        measurement.endFrame();
+
+        if (next == messages.size()) {
+          idleFrames = ranTasks || !pipelineIdle() ? 0 : idleFrames + 1;
+          if (frame > messages.size() * 8 + MAX_DRAIN_FRAMES) {
+            throw new IllegalStateException("The parse worker never caught up");
+          }
+        }
+      }
+    } finally {
+      measurement.finish(System.nanoTime() - start);
+      pipeline.stop();
+    }
+  }
+
+  private boolean pipelineIdle() {
+    final Collection<?> incoming = Stubs.field(pipeline, "incoming");
+    final Collection<?> parsed = Stubs.field(pipeline, "parsed");
+    return incoming.isEmpty() && parsed.isEmpty();
+  }
+
+  private void arrive(ChatMessage message, int id) {
+    final ReplayMessageNode node = new ReplayMessageNode(id, message.getType(), message.getName(), message.getMessage());
+    message.setMessageNode(node.node);
+
+    measurement.begin();
+    plugin.onChatMessage(message);
+    overlay.onChatMessage(message);
+    measurement.end();
+
+    history.addLast(node);
+    if (history.size() > HISTORY) {
+      history.removeFirst();
+    }
+    chatDirty = true;
+  }
+
+  // lays the history out the way the chatbox does, newest at the bottom
+  @SuppressWarnings("unchecked")
+  private void rebuildChatbox() {
+    final StubWidget[] lines = new StubWidget[history.size()];
+    expectedMatches = new List[lines.length];
+    int y = 0;
+    int i = 0;
+    for (ReplayMessageNode node : history) {
+      final String text = node.format != null ? node.format : node.value;
+      final int nameWidth = Stubs.textWidth(node.name + ": ");
+      final int width = CHAT_WIDTH - nameWidth;
+      final int height = InteractiveChat.CHATLINE_HEIGHT * wrappedLines(text, width);
+
+      final StubWidget line = new StubWidget(chatLines.id, nameWidth, y, width, height);
+      line.index = i;
+      line.text = text;
+      line.font = font;
+      lines[i++] = line;
+      y += height;
+    }
+
+    chatLines.setChildren(lines);
+    chatLines.scrollY = Math.max(0, y - CHAT_HEIGHT - scrollBack);
+
+    measurement.begin();
+    overlay.onScriptPostFired(new ScriptPostFired(ScriptID.BUILD_CHATBOX));
+    setAttached(linkedLines.count() > 0);
+    measurement.end();
+
+    final long checkStart = System.nanoTime();
+    for (int line = 0; line < lines.length; line++) {
+      final LegacyDifference difference = legacyDifference(lines[line].widget);
+      if (difference != null) {
+        legacyDifferences.merge(difference, 1L, Long::sum);
+      }
+      expectedMatches[line] = expectedLayout(lines[line].widget);
+      checkLine(lines[line].widget, expectedMatches[line]);
+    }
+    checkTime += System.nanoTime() - checkStart;
+  }
+
+  // the expected hitboxes are in canvas coordinates, so they move with the chat
+  private void updateExpectedMatches() {
+    final long checkStart = System.nanoTime();
+    final Widget[] lines = chatLines.children;
+    for (int line = 0; line < lines.length; line++) {
+      expectedMatches[line] = expectedLayout(lines[line]);
+    }
+    checkTime += System.nanoTime() - checkStart;
+  }
+
+  private static LegacyDifference legacyDifference(Widget line) {
+    return LegacyDifference.of(Text.removeFormattingTags(line.getText()), line.getFont(), line.getWidth());
+  }
+
+  private static List<Match> expectedLayout(Widget line) {
+    return legacyDifference(line) == null ? LegacyLayout.layout(line) : ClientLayout.layout(line);
+  }
+
+  // what the plugin does, without an overlay manager or mouse manager to attach to
+  private void setAttached(boolean attached) {
+    if (attached == this.attached) {
+      return;
+    }
+
+    this.attached = attached;
+    if (attached) {
+      hoverState.mouseMoved(stubClient.mouseX, stubClient.mouseY);
+      hoverState.chatChanged();
+    } else {
+      overlay.clearHover();
+    }
+  }
+
+  private int wrappedLines(String text, int width) {
+    return ClientLayout.lines(Text.removeFormattingTags(text), font, width).size();
+  }
+
+  // scrolls back a couple of lines for a while every so often
+  private void scroll(int frame) {
+    final int scrollBack = frame % 600 >= 450 ? 3 * InteractiveChat.CHATLINE_HEIGHT + 5 : 0;
+    if (scrollBack != this.scrollBack) {
+      final int contentHeight = chatLines.scrollY + CHAT_HEIGHT + this.scrollBack;
+      this.scrollBack = scrollBack;
+      chatLines.scrollY = Math.max(0, contentHeight - CHAT_HEIGHT - scrollBack);
+      if (expectedMatches != null) {
+        updateExpectedMatches();
+      }
+    }
+  }
+
+  // sweeps left to right across a row of text at a time, resting now and then
+  private void moveMouse(int frame) {
+    if (frame % 50 >= 40) {
+      return;
+    }
+
+    final int sweep = frame / 98;
+    final int x = CHAT_X + (frame % 98) * 5;
+    final int y = CHAT_Y + 2 + (sweep * 5) % (CHAT_HEIGHT - 4);
+    stubClient.mouseX = x;
+    stubClient.mouseY = y;
+    if (!attached) {
+      return;
+    }
+
+    measurement.begin();
+    mouseListener.mouseMoved(new MouseEvent(canvas, MouseEvent.MOUSE_MOVED, 0, 0, x, y, 0, false));
+    measurement.end();
+  }
+
+  // every click holds a different modifier key, picking a different link provider
+  private static final int[] CLICK_MODIFIERS = {
+      0, InputEvent.SHIFT_DOWN_MASK, InputEvent.CTRL_DOWN_MASK, InputEvent.ALT_DOWN_MASK,
+  };
+
+  private void click(int frame) {
+    final int x = stubClient.mouseX;
+    final int y = stubClient.mouseY;
+    final boolean onTerm = matchManager.getSnapshot().segmentAt(x, y) != -1;
+
+    final int modifiers = CLICK_MODIFIERS[(int) ((termClicks + missClicks) % CLICK_MODIFIERS.length)];
+    final MouseEvent event = new MouseEvent(canvas, MouseEvent.MOUSE_PRESSED, frame * 20L,
+        InputEvent.BUTTON1_DOWN_MASK | modifiers, x, y, 1, false, MouseEvent.BUTTON1);
+    measurement.begin();
+    mouseListener.mousePressed(event);
+    measurement.end();
+
+    if (onTerm) {
+      termClicks++;
+      if (!event.isConsumed()) {
+        mismatch("click at " + x + "," + y + " on a term wasn't consumed");
+      }
+    } else {
+      missClicks++;
+      if (event.isConsumed()) {
+        mismatch("click at " + x + "," + y + " was consumed away from any term");
+      }
+    }
+  }
+
+  private void checkLine(Widget line, List<Match> expected) {
+    lineChecks++;
+    final Rectangle bounds = line.getBounds();
+    final List<Match> actual = new ArrayList<>();
+    for (Match match : layoutCache.layout(line)) {
+      actual.add(match.translate(bounds.x, bounds.y));
+    }
+
+    final List<Rectangle> expectedCoverage = coverage(expected);
+    final List<Rectangle> actualCoverage = coverage(actual);
+    if (!expectedCoverage.equals(actualCoverage)) {
+      mismatch("hitboxes of \"" + line.getText() + "\" were " + actualCoverage + ", expected " + expectedCoverage);
+    }
+  }
+
+  private void checkHover() {
+    hoverChecks++;
+    final int x = stubClient.mouseX;
+    final int y = stubClient.mouseY;
+
+    final List<Match> expected = new ArrayList<>();
+    if (expectedMatches != null && chatLines.widget.getBounds().contains(x, y)) {
+      for (List<Match> matches : expectedMatches) {
+        for (Match match : matches) {
+          if (match.bounds.contains(x, y)) {
+            for (Match segment : matches) {
+              if (segment.index == match.index) {
+                expected.add(segment);
+              }
+            }
+            break;
+          }
+        }
+        if (!expected.isEmpty()) {
+          break;
+        }
+      }
+    }
+
+    final MatchSnapshot snapshot = matchManager.getSnapshot();
+    final List<Rectangle> actual = new ArrayList<>();
+    for (int segment = 0; segment < snapshot.size(); segment++) {
+      actual.add(new Rectangle(snapshot.x(segment), snapshot.y(segment), snapshot.width(segment), snapshot.height(segment)));
+    }
+
+    final List<Rectangle> expectedCoverage = coverage(expected);
+    final List<Rectangle> actualCoverage = mergeRows(actual);
+    if (!expectedCoverage.equals(actualCoverage)) {
+      mismatch("hovering " + x + "," + y + " highlighted " + actualCoverage + ", expected " + expectedCoverage);
+    } else if (!expected.isEmpty()) {
+      termHovers++;
+      if (!expected.get(0).term.equals(snapshot.term(0))) {
+        mismatch("hovering " + x + "," + y + " found \"" + snapshot.term(0) + "\", expected \"" + expected.get(0).term + "\"");
+      }
+    }
+  }
+
+  private void mismatch(String description) {
+    if (mismatches++ < 20) {
+      System.err.println("MISMATCH " + description);
+    }
+  }
+
+  // the reference layouts may split a term's hitboxes differently on a row
+  private static List<Rectangle> coverage(List<Match> matches) {
+    final List<Rectangle> rectangles = new ArrayList<>(matches.size());
+    for (Match match : matches) {
+      rectangles.add(new Rectangle(match.bounds));
+    }
+    return mergeRows(rectangles);
+  }
+
+  private static List<Rectangle> mergeRows(List<Rectangle> rectangles) {
+    rectangles.sort(Comparator.<Rectangle>comparingInt(r -> r.y).thenComparingInt(r -> r.x));
+    final List<Rectangle> merged = new ArrayList<>();
+    for (Rectangle rectangle : rectangles) {
+      if (rectangle.width <= 0) {
+        continue;
+      }
+
+      final Rectangle last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+      if (last != null && last.y == rectangle.y && last.height == rectangle.height && rectangle.x <= last.x + last.width) {
+        last.width = Math.max(last.x + last.width, rectangle.x + rectangle.width) - last.x;
+      } else {
+        merged.add(rectangle);
+      }
+    }
+    return merged;
+  }
+
+  void report(int messageCount, PrintStream out) {
+    final long[] frames = measurement.frameTimes();
+    Arrays.sort(frames);
+
+    // checking against the reference layout isn't part of the load
+    final double seconds = (measurement.wallTime - checkTime) / 1e9;
+    out.printf("messages   %d in %.2f s, %.0f messages/s, %d dropped, %d failed (%.2f s more checking hitboxes)%n",
+        messageCount, seconds, messageCount / seconds, Stubs.<LongAdder>field(metrics, "messagesDropped").sum(),
+        Stubs.<LongAdder>field(metrics, "messagesFailed").sum(), checkTime / 1e9);
+    out.printf("frames     %d (%d detached), plugin time per frame p50 %.1f us, p90 %.1f us, p99 %.1f us, max %.1f us%n",
+        frames.length, detachedFrames, percentile(frames, 50), percentile(frames, 90), percentile(frames, 99),
+        frames.length == 0 ? 0 : frames[frames.length - 1] / 1e3);
+    out.printf("allocation %.0f B/frame on the client thread, %.0f B/message on the parse worker, %.1f MB/s overall%n",
+        frames.length == 0 ? 0 : (double) measurement.clientBytes / frames.length,
+        messageCount == 0 ? 0 : (double) measurement.workerBytes / messageCount,
+        (measurement.clientBytes + measurement.workerBytes) / seconds / (1 << 20));
+    out.printf("hitboxes   %d lines and %d hovers checked (%d over a term), %d clicks (%d on a term, %d links opened), %d mismatches%n",
+        lineChecks, hoverChecks, termHovers, termClicks + missClicks, termClicks, opened.size(), mismatches);
+    out.printf("legacy     lines checked against the client's wrapping instead: %s%n", legacyDifferences);
+  }
+
+  private static double percentile(long[] sorted, int percentile) {
+    if (sorted.length == 0) {
+      return 0;
+    }
+    return sorted[Math.min(sorted.length - 1, (int) ((long) sorted.length * percentile / 100))] / 1e3;
+  }
+
+  /**
+   * Time and allocation spent in plugin code on the replaying thread, per
+   * frame, and by the parse worker overall.
+   */
+  private static class Measurement {
+    private final ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private final long clientThreadId = Thread.currentThread().getId();
+
+    private long[] frameTimes = new long[1024];
+    private int frameCount;
+    private long frameTime;
+    private long segmentStart;
+    private long segmentBytes;
+    private long workerThreadId = -1;
+    private long workerStartBytes;
+
+    long wallTime;
+    long clientBytes;
+    long workerBytes;
+
+    void beginFrame() {
+      frameTime = 0;
+      if (workerThreadId == -1) {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+          if (thread.getName().equals("interactive-chat-parser")) {
+            workerThreadId = thread.getId();
+            workerStartBytes = threads.getThreadAllocatedBytes(workerThreadId);
+          }
+        }
+      }
+    }
+
+    void begin() {
+      segmentBytes = threads.getThreadAllocatedBytes(clientThreadId);
+      segmentStart = System.nanoTime();
+    }
+
+    void end() {
+      frameTime += System.nanoTime() - segmentStart;
+      clientBytes += threads.getThreadAllocatedBytes(clientThreadId) - segmentBytes;
+    }
+
+    void endFrame() {
+      if (frameCount == frameTimes.length) {
+        frameTimes = Arrays.copyOf(frameTimes, frameCount * 2);
+      }
+      frameTimes[frameCount++] = frameTime;
+    }
+
+    void finish(long wallTime) {
+      this.wallTime = wallTime;
+      if (workerThreadId != -1) {
+        workerBytes = threads.getThreadAllocatedBytes(workerThreadId) - workerStartBytes;
+      }
+    }
+
+    long[] frameTimes() {
+      return Arrays.copyOf(frameTimes, frameCount);
+    }
+  }
+
+  /**
+   * Runs tasks queued from any thread on the replaying thread, once a frame,
+   * like the client does.
+   */
+  private static class ReplayClientThread extends ClientThread {
+    private final Queue<BooleanSupplier> queue = new ConcurrentLinkedQueue<>();
+
+    @Override
+    public void invokeLater(Runnable runnable) {
+      queue.add(() -> {
+        runnable.run();
+        return true;
+      });
+    }
+
+    @Override
+    public void invokeLater(BooleanSupplier supplier) {
+      queue.add(supplier);
+    }
+
+    // tasks queued while these run wait for the next frame
+    boolean runQueued() {
+      final int count = queue.size();
+      for (int i = 0; i < count; i++) {
+        final BooleanSupplier task = queue.poll();
+        if (!task.getAsBoolean()) {
+          queue.add(task);
+        }
+      }
+      return count > 0;
+    }
+  }
+
+  /**
+   * A {@link MessageNode} backed by plain fields.
+   */
+  private static class ReplayMessageNode implements InvocationHandler {
+    final MessageNode node = (MessageNode) Proxy.newProxyInstance(
+        MessageNode.class.getClassLoader(), new Class<?>[]{MessageNode.class}, this);
+
+    final int id;
+    final ChatMessageType type;
+    final String name;
+    String value;
+    String format;
+
+    ReplayMessageNode(int id, ChatMessageType type, String name, String value) {
+      this.id = id;
+      this.type = type;
+      this.name = name;
+      this.value = value;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+      switch (method.getName()) {
+        case "getId":
+          return id;
+        case "getType":
+          return type;
+        case "getName":
+          return name;
+        case "getValue":
+          return value;
+        case "setValue":
+          value = (String) args[0];
+          return null;
+        case "getRuneLiteFormatMessage":
+          return format;
+        case "setRuneLiteFormatMessage":
+          format = (String) args[0];
+          return null;
+        case "hashCode":
+          return System.identityHashCode(proxy);
+        case "equals":
+          return proxy == args[0];
+        case "toString":
+          return "ReplayMessageNode[" + value + "]";
+        default:
+          return Stubs.zero(method.getReturnType());
+      }
+    }
+  }
+}
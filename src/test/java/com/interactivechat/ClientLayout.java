@@ -0,0 +1,112 @@
+/*
+
+Copyright (c) 2021, Richard Cane
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package com.interactivechat;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.runelite.api.FontTypeFace;
+import net.runelite.api.widgets.Widget;
+import net.runelite.client.util.Text;
+
+/**
+ * The hitboxes of a chat line wrapped the way the client wraps it: a line
+ * only breaks at whitespace, a word moved to a new line loses its leading
+ * whitespace, and a word wider than the line overflows a line of its own. The
+ * same rule {@link ChatReplay} sizes its chat lines with.
+ *
+ * Written for clarity over speed, measuring substrings with the font, so it
+ * shares nothing with {@link MessageLayout} beyond finding the bracketed
+ * parts the way {@link LegacyLayout} does.
+ */
+final class ClientLayout {
+  private static final int CHATLINE_HEIGHT = InteractiveChat.CHATLINE_HEIGHT;
+
+  private ClientLayout() {
+  }
+
+  static List<Match> layout(Widget messageWidget) {
+    final String message = Text.removeFormattingTags(messageWidget.getText());
+    final FontTypeFace font = messageWidget.getFont();
+    final Rectangle bounds = messageWidget.getBounds();
+
+    final List<Match> matches = new ArrayList<>();
+    final List<int[]> lines = lines(message, font, messageWidget.getWidth());
+    final String[] parts = LegacyLayout.BRACKETED_PATTERN.split(message);
+    int partStart = 0;
+    int searchIndex = 0;
+    for (String part : parts) {
+      final int partEnd = partStart + part.length();
+      if (part.startsWith(LegacyLayout.LEFT_DELIMITER) && part.endsWith(LegacyLayout.RIGHT_DELIMITER)) {
+        searchIndex++;
+        final String term = part.substring(1, part.length() - 1);
+        for (int line = 0; line < lines.size(); line++) {
+          final int lineStart = lines.get(line)[0];
+          final int start = Math.max(partStart, lineStart);
+          final int end = Math.min(partEnd, lines.get(line)[1]);
+          if (start >= end) {
+            continue;
+          }
+
+          final int x = font.getTextWidth(message.substring(lineStart, start));
+          final int width = font.getTextWidth(message.substring(start, end));
+          matches.add(new Match(searchIndex, term, bounds.x + x, bounds.y + line * CHATLINE_HEIGHT, width));
+        }
+      }
+      partStart = partEnd;
+    }
+    return matches;
+  }
+
+  /**
+   * Where each line's visible text starts and ends in the message.
+   */
+  static List<int[]> lines(String message, FontTypeFace font, int width) {
+    final List<int[]> lines = new ArrayList<>();
+    int lineStart = 0;
+    int lineWidth = 0;
+    int position = 0;
+    for (String word : message.split("(?=\\s+)")) {
+      final int wordWidth = font.getTextWidth(word);
+      if (lineWidth > 0 && lineWidth + wordWidth > width) {
+        lines.add(new int[]{lineStart, position});
+        lineStart = position;
+        while (lineStart < position + word.length() && message.charAt(lineStart) <= ' ') {
+          lineStart++;
+        }
+        lineWidth = font.getTextWidth(word.trim());
+      } else {
+        lineWidth += wordWidth;
+      }
+      position += word.length();
+    }
+    lines.add(new int[]{lineStart, message.length()});
+    return lines;
+  }
+}
@@ -0,0 +1,75 @@
+/*
+
+Copyright (c) 2021, Richard Cane
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package com.interactivechat;
+
+import net.runelite.api.FontTypeFace;
+
+/**
+ * The ways the layout deliberately differs from {@link LegacyLayout}. A chat
+ * line with none of them must lay out exactly like the legacy layout, and one
+ * with any of them like the client, in {@link ClientLayout}.
+ */
+enum LegacyDifference {
+  /**
+   * A word wider than the line. The client keeps wrapping after it, but the
+   * legacy layout gave up on the rest of its part.
+   */
+  WIDE_WORD,
+  /**
+   * A bracket with no whitespace on its outer side, as in "ab[dragon]". The
+   * client only breaks lines at whitespace, but the legacy layout also broke
+   * them where a part began.
+   */
+  BRACKET_IN_WORD;
+
+  /**
+   * The first difference the message has at the given width, or null if it
+   * should lay out like the legacy layout.
+   */
+  static LegacyDifference of(String message, FontTypeFace font, int width) {
+    for (String word : message.split("(?=\\s+)")) {
+      if (font.getTextWidth(word) > width) {
+        return WIDE_WORD;
+      }
+    }
+
+    for (int i = 0; i < message.length(); i++) {
+      final char c = message.charAt(i);
+      if (c == '[' && i > 0 && !isWhitespace(message.charAt(i - 1))
+          || c == ']' && i + 1 < message.length() && !isWhitespace(message.charAt(i + 1))) {
+        return BRACKET_IN_WORD;
+      }
+    }
+    return null;
+  }
+
+  // same as \s, where the client breaks lines
+  private static boolean isWhitespace(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+  }
+}
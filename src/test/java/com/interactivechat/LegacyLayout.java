@@ -0,0 +1,127 @@
+/*
+
+Copyright (c) 2021, Richard Cane
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package com.interactivechat;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import net.runelite.api.FontTypeFace;
+import net.runelite.api.widgets.Widget;
+import net.runelite.client.util.Text;
+
+/**
+ * The original regex split and per-frame layout from the overlay, kept as a
+ * baseline to check and measure the cached layout against.
+ */
+final class LegacyLayout {
+  static final Pattern BRACKETED_PATTERN = Pattern.compile("((?<=\\])|(?=\\[))", Pattern.DOTALL);
+  static final String LEFT_DELIMITER = InteractiveChat.LEFT_DELIMITER;
+  static final String RIGHT_DELIMITER = InteractiveChat.RIGHT_DELIMITER;
+  static final int CHATLINE_HEIGHT = InteractiveChat.CHATLINE_HEIGHT;
+
+  private LegacyLayout() {
+  }
+
+  static List<Match> layout(Widget messageWidget) {
+    final String message = Text.removeFormattingTags(messageWidget.getText());
+    final String[] messageParts = BRACKETED_PATTERN.split(message);
+    if (messageParts.length == 1 && !message.startsWith(LEFT_DELIMITER)) {
+      return new ArrayList<>();
+    }
+
+    return getBracketMatches(messageWidget, messageParts);
+  }
+
+  static List<Match> getBracketMatches(Widget messageWidget, String[] parts) {
+    final FontTypeFace font = messageWidget.getFont();
+    final Rectangle messageBounds = messageWidget.getBounds();
+    final int messageWidgetWidth = messageWidget.getWidth();
+
+    final int minY = (int) messageBounds.getMinY();
+    final int minX = (int) messageBounds.getMinX();
+
+    int searchIndex = 0;
+    int incrementedWidth = 0;
+    int incrementedY = minY;
+
+    final List<Match> matches = new ArrayList<Match>();
+    for (String part : parts) {
+      final boolean bracketed = part.startsWith(LEFT_DELIMITER) && part.endsWith(RIGHT_DELIMITER);
+      final int partWidth = font.getTextWidth(part);
+
+      String term = "";
+      if (bracketed) {
+        term = part.replace(LEFT_DELIMITER, "").replace(RIGHT_DELIMITER, "");
+        searchIndex++;
+      }
+
+      if (incrementedWidth + partWidth > messageWidgetWidth) {
+        for (String word : part.split("(?=\\s+)")) {
+          final int wordWidth = font.getTextWidth(word);
+          if (incrementedWidth + wordWidth <= messageWidgetWidth) {
+            if (bracketed) {
+              matches.add(new Match(searchIndex, term, minX + incrementedWidth, incrementedY, wordWidth));
+            }
+
+            incrementedWidth += wordWidth;
+            continue;
+          } else if (wordWidth > messageWidgetWidth) {
+            if (incrementedWidth > 0) {
+              incrementedY += CHATLINE_HEIGHT;
+            }
+
+            if (bracketed) {
+              matches.add(new Match(searchIndex, term, minX + incrementedWidth, incrementedY, wordWidth));
+            }
+
+            incrementedY += CHATLINE_HEIGHT;
+            incrementedWidth = 0;
+            break;
+          } else {
+            final int trimmedWidth = font.getTextWidth(word.trim());
+            incrementedY += CHATLINE_HEIGHT;
+            incrementedWidth = trimmedWidth;
+
+            if (bracketed) {
+              matches.add(new Match(searchIndex, term, minX, incrementedY, trimmedWidth));
+            }
+          }
+        }
+      } else if (bracketed) {
+        matches.add(new Match(searchIndex, term, minX + incrementedWidth, incrementedY, partWidth));
+        incrementedWidth += partWidth;
+      } else {
+        incrementedWidth += partWidth;
+      }
+    }
+
+    return matches;
+  }
+}
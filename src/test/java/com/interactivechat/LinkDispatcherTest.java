@@ -0,0 +1,78 @@
+/*
+
+Copyright (c) 2021, Richard Cane
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package com.interactivechat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import okhttp3.HttpUrl;
+
+public class LinkDispatcherTest {
+  private static final HttpUrl WHIP = LinkProvider.WIKI_PAGE.url("Abyssal whip");
+  private static final HttpUrl SCIMITAR = LinkProvider.WIKI_PAGE.url("Dragon scimitar");
+
+  private final List<String> opened = new ArrayList<>();
+  private final LinkDispatcher links = new LinkDispatcher(opened::add, Runnable::run);
+
+  @Test
+  public void opensALink() {
+    assertTrue(links.open(WHIP, 1000));
+    assertEquals(Arrays.asList(WHIP.toString()), opened);
+  }
+
+  @Test
+  public void sameLinkWithinTheIntervalIsDebounced() {
+    assertTrue(links.open(WHIP, 1000));
+    assertFalse(links.open(WHIP, 1000 + LinkDispatcher.DEBOUNCE_MILLIS - 1));
+    assertTrue(links.open(WHIP, 1000 + LinkDispatcher.DEBOUNCE_MILLIS));
+    assertEquals(Arrays.asList(WHIP.toString(), WHIP.toString()), opened);
+  }
+
+  @Test
+  public void differentLinkIsNotDebounced() {
+    assertTrue(links.open(WHIP, 1000));
+    assertTrue(links.open(SCIMITAR, 1100));
+    assertTrue(links.open(WHIP, 1200));
+    assertEquals(Arrays.asList(WHIP.toString(), SCIMITAR.toString(), WHIP.toString()), opened);
+  }
+
+  @Test
+  public void intervalStartsAtTheLastOpen() {
+    assertTrue(links.open(WHIP, 1000));
+    assertFalse(links.open(WHIP, 1400));
+    // the debounced click doesn't extend the interval
+    assertTrue(links.open(WHIP, 1600));
+  }
+}
@@ -0,0 +1,102 @@
+/*
+
+Copyright (c) 2021, Richard Cane
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package com.interactivechat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.awt.event.InputEvent;
+
+import org.junit.Test;
+
+import okhttp3.HttpUrl;
+
+public class LinkProviderTest {
+  @Test
+  public void selectsByPrefix() {
+    assertSame(LinkProvider.WIKI_SEARCH, LinkProvider.select("wiki:dragon", 0));
+    assertSame(LinkProvider.GRAND_EXCHANGE, LinkProvider.select("ge:abyssal whip", 0));
+    assertSame(LinkProvider.HISCORES, LinkProvider.select("HS: zezima", 0));
+    assertNull(LinkProvider.select("abyssal whip", 0));
+  }
+
+  @Test
+  public void selectsByModifier() {
+    assertSame(LinkProvider.WIKI_SEARCH, LinkProvider.select("dragon", InputEvent.ALT_DOWN_MASK));
+    assertSame(LinkProvider.GRAND_EXCHANGE, LinkProvider.select("abyssal whip", InputEvent.SHIFT_DOWN_MASK));
+    assertSame(LinkProvider.HISCORES, LinkProvider.select("zezima", InputEvent.CTRL_DOWN_MASK));
+    assertNull(LinkProvider.select("abyssal whip", InputEvent.META_DOWN_MASK));
+  }
+
+  @Test
+  public void prefixBeatsModifier() {
+    assertSame(LinkProvider.HISCORES, LinkProvider.select("hs:zezima", InputEvent.SHIFT_DOWN_MASK));
+    assertSame(LinkProvider.GRAND_EXCHANGE, LinkProvider.select("ge:whip", InputEvent.CTRL_DOWN_MASK | InputEvent.ALT_DOWN_MASK));
+  }
+
+  @Test
+  public void stripsOnlyItsOwnPrefix() {
+    assertEquals("abyssal whip", LinkProvider.GRAND_EXCHANGE.stripPrefix("ge: abyssal whip"));
+    assertEquals("whip", LinkProvider.GRAND_EXCHANGE.stripPrefix("GE:whip"));
+    assertEquals("hs:zezima", LinkProvider.GRAND_EXCHANGE.stripPrefix("hs:zezima"));
+    assertEquals("abyssal whip", LinkProvider.GRAND_EXCHANGE.stripPrefix("abyssal whip"));
+    assertEquals("dragon", LinkProvider.WIKI_PAGE.stripPrefix("dragon"));
+  }
+
+  @Test
+  public void wikiSearch() {
+    final HttpUrl url = LinkProvider.WIKI_SEARCH.url("abyssal whip");
+    assertEquals("oldschool.runescape.wiki", url.host());
+    assertEquals("/", url.encodedPath());
+    assertEquals("abyssal whip", url.queryParameter("search"));
+  }
+
+  @Test
+  public void wikiPageReplacesTheBasesEmptySegment() {
+    final HttpUrl url = LinkProvider.WIKI_PAGE.url("Dragon scimitar");
+    assertEquals("oldschool.runescape.wiki", url.host());
+    assertEquals("/w/Dragon_scimitar", url.encodedPath());
+  }
+
+  @Test
+  public void grandExchange() {
+    final HttpUrl url = LinkProvider.GRAND_EXCHANGE.url("abyssal whip");
+    assertEquals("secure.runescape.com", url.host());
+    assertEquals("/m=itemdb_oldschool/results", url.encodedPath());
+    assertEquals("abyssal whip", url.queryParameter("query"));
+  }
+
+  @Test
+  public void hiscores() {
+    final HttpUrl url = LinkProvider.HISCORES.url("zezima");
+    assertEquals("secure.runescape.com", url.host());
+    assertEquals("/m=hiscore_oldschool/hiscorepersonal", url.encodedPath());
+    assertEquals("zezima", url.queryParameter("user1"));
+  }
+}
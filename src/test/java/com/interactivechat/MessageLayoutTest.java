@@ -0,0 +1,182 @@
+/*
+
+Copyright (c) 2021, Richard Cane
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package com.interactivechat;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import net.runelite.api.FontTypeFace;
+
+public class MessageLayoutTest {
+  private static final String[] TOKENS = {
+      "[", "]", " ", "  ", "ab", "hello", "<lt>", "x", "ffffffffffffffffffffffff",
+      "[dragon scimitar]", "[a b c d e f g h i j k l m n o p]", "[fffffffffffffffffffffffffff whip]",
+  };
+  private static final int H = MessageLayout.CHATLINE_HEIGHT;
+
+  private final FontTypeFace font = Stubs.font();
+  private final GlyphWidthCache glyphs = new GlyphWidthCache();
+  private final SpanBuffer spans = new SpanBuffer();
+
+  @Test
+  public void randomMessagesWrapLikeTheClient() {
+    final Random random = new Random(11);
+    for (int i = 0; i < 100_000; i++) {
+      final StringBuilder message = new StringBuilder();
+      final int tokens = random.nextInt(30);
+      for (int t = 0; t < tokens; t++) {
+        message.append(TOKENS[random.nextInt(TOKENS.length)]);
+      }
+      final int width = 20 + random.nextInt(300);
+
+      final String text = message.toString();
+      final StubWidget widget = new StubWidget(0, 0, 0, width, H);
+      widget.text = text;
+      widget.font = font;
+
+      assertEquals("\"" + text + "\" at width " + width,
+          coverage(ClientLayout.layout(widget.widget)), coverage(layout(text, width)));
+    }
+  }
+
+  @Test
+  public void randomMessagesMatchTheLegacyLayoutBarTheNamedDifferences() {
+    final Map<LegacyDifference, Integer> differed = new EnumMap<>(LegacyDifference.class);
+    final Random random = new Random(12);
+    for (int i = 0; i < 100_000; i++) {
+      final StringBuilder message = new StringBuilder();
+      final int tokens = random.nextInt(30);
+      for (int t = 0; t < tokens; t++) {
+        message.append(TOKENS[random.nextInt(TOKENS.length)]);
+      }
+      final int width = 20 + random.nextInt(300);
+
+      final String text = message.toString();
+      final StubWidget widget = new StubWidget(0, 0, 0, width, H);
+      widget.text = text;
+      widget.font = font;
+
+      final Map<Integer, List<Rectangle>> legacy = coverage(LegacyLayout.layout(widget.widget));
+      final Map<Integer, List<Rectangle>> actual = coverage(layout(text, width));
+      final LegacyDifference difference = LegacyDifference.of(text, font, width);
+      if (difference == null) {
+        assertEquals("\"" + text + "\" at width " + width, legacy, actual);
+      } else if (!legacy.equals(actual)) {
+        differed.merge(difference, 1, Integer::sum);
+      }
+    }
+
+    // each difference is still needed to explain the layout
+    assertEquals(EnumSet.allOf(LegacyDifference.class), differed.keySet());
+  }
+
+  @Test
+  public void wideWordGetsALineOfItsOwn() {
+    final String wide = "ffffffffffffffffffffffff";
+    final int wideWidth = Stubs.textWidth(wide);
+    final List<Match> matches = layout("hi " + wide + " [whip]", wideWidth - 10);
+
+    assertEquals(1, matches.size());
+    assertEquals(bounds(0, 2, Stubs.textWidth("[whip]")), matches.get(0).bounds);
+  }
+
+  @Test
+  public void wideWordInsideATermKeepsTheRestOfIt() {
+    final String wide = "[ffffffffffffffffffffffff";
+    final int wideWidth = Stubs.textWidth(wide);
+    final List<Match> matches = layout(wide + " dragon whip]", wideWidth - 10);
+
+    assertEquals(2, matches.size());
+    assertEquals(bounds(0, 0, wideWidth), matches.get(0).bounds);
+    assertEquals(bounds(0, 1, Stubs.textWidth("dragon whip]")), matches.get(1).bounds);
+  }
+
+  @Test
+  public void bracketAfterALetterWrapsWithTheWord() {
+    final String word = "ab[dragon]";
+    final int width = Stubs.textWidth("hello ab");
+    final List<Match> matches = layout("hello " + word, width);
+
+    assertEquals(1, matches.size());
+    assertEquals(bounds(Stubs.textWidth("ab"), 1, Stubs.textWidth("[dragon]")), matches.get(0).bounds);
+  }
+
+  @Test
+  public void closingBracketBeforeALetterWrapsWithTheWord() {
+    final int width = Stubs.textWidth("[dragon]") + 2;
+    final List<Match> matches = layout("[dragon]ab", width);
+
+    assertEquals(1, matches.size());
+    assertEquals(bounds(0, 0, Stubs.textWidth("[dragon]")), matches.get(0).bounds);
+  }
+
+  private List<Match> layout(String text, int width) {
+    BracketTokenizer.tokenize(text, spans);
+    return new MessageLayout(text, spans, glyphs).layout(font, width);
+  }
+
+  private static Rectangle bounds(int x, int line, int width) {
+    return new Match(0, "", x, line * H, width).bounds;
+  }
+
+  // each term's hitboxes with those touching on a line joined, since the
+  // legacy layout has one per word
+  private static Map<Integer, List<Rectangle>> coverage(List<Match> matches) {
+    final Map<Integer, List<Rectangle>> byTerm = new TreeMap<>();
+    for (Match match : matches) {
+      if (match.bounds.width > 0) {
+        byTerm.computeIfAbsent(match.index, index -> new ArrayList<>()).add(new Rectangle(match.bounds));
+      }
+    }
+
+    for (List<Rectangle> rectangles : byTerm.values()) {
+      rectangles.sort(Comparator.<Rectangle>comparingInt(r -> r.y).thenComparingInt(r -> r.x));
+      for (int i = rectangles.size() - 1; i > 0; i--) {
+        final Rectangle last = rectangles.get(i - 1);
+        final Rectangle next = rectangles.get(i);
+        if (last.y == next.y && next.x <= last.x + last.width) {
+          last.width = Math.max(last.x + last.width, next.x + next.width) - last.x;
+          rectangles.remove(i);
+        }
+      }
+    }
+    return byTerm;
+  }
+}
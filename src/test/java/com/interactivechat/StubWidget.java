@@ -0,0 +1,128 @@
+/*
+
+Copyright (c) 2021, Richard Cane
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package com.interactivechat;
+
+import java.awt.Rectangle;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import net.runelite.api.FontTypeFace;
+import net.runelite.api.Point;
+import net.runelite.api.widgets.Widget;
+
+/**
+ * A {@link Widget} backed by plain fields. Only the methods the plugin uses
+ * are answered, everything else returns a zero value.
+ */
+class StubWidget implements InvocationHandler {
+  final Widget widget = (Widget) Proxy.newProxyInstance(
+      Widget.class.getClassLoader(), new Class<?>[]{Widget.class}, this);
+
+  StubWidget parent;
+  Widget[] children = new Widget[0];
+
+  int id;
+  int index = -1;
+  int x;
+  int y;
+  int width;
+  int height;
+  int scrollY;
+  boolean hidden;
+  String text = "";
+  FontTypeFace font;
+
+  StubWidget(int id, int x, int y, int width, int height) {
+    this.id = id;
+    this.x = x;
+    this.y = y;
+    this.width = width;
+    this.height = height;
+  }
+
+  int canvasX() {
+    return parent == null ? x : parent.canvasX() + x;
+  }
+
+  int canvasY() {
+    return parent == null ? y : parent.canvasY() + y - parent.scrollY;
+  }
+
+  void setChildren(StubWidget... stubs) {
+    children = new Widget[stubs.length];
+    for (int i = 0; i < stubs.length; i++) {
+      stubs[i].parent = this;
+      children[i] = stubs[i].widget;
+    }
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) {
+    switch (method.getName()) {
+      case "getId":
+        return id;
+      case "getIndex":
+        return index;
+      case "getText":
+        return text;
+      case "getFont":
+        return font;
+      case "getWidth":
+        return width;
+      case "getHeight":
+        return height;
+      case "getRelativeX":
+        return x;
+      case "getRelativeY":
+        return y;
+      case "getScrollY":
+        return scrollY;
+      case "isHidden":
+      case "isSelfHidden":
+        return hidden || (parent != null && parent.hidden);
+      case "getChildren":
+      case "getDynamicChildren":
+        return children;
+      case "getParent":
+        return parent == null ? null : parent.widget;
+      case "getBounds":
+        return new Rectangle(canvasX(), canvasY(), width, height);
+      case "getCanvasLocation":
+        return new Point(canvasX(), canvasY());
+      case "hashCode":
+        return System.identityHashCode(proxy);
+      case "equals":
+        return proxy == args[0];
+      case "toString":
+        return "StubWidget[" + text + "]";
+      default:
+        return Stubs.zero(method.getReturnType());
+    }
+  }
+}
@@ -0,0 +1,228 @@
+/*
+
+Copyright (c) 2021, Richard Cane
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package com.interactivechat;
+
+import java.awt.Color;
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.runelite.api.Client;
+import net.runelite.api.FontTypeFace;
+import net.runelite.api.Point;
+import net.runelite.api.widgets.Widget;
+import net.runelite.api.widgets.WidgetInfo;
+
+/**
+ * Deterministic stand-ins for the client objects the plugin talks to, for
+ * benchmarks and load harnesses that run without a game client.
+ */
+final class Stubs {
+  private Stubs() {
+  }
+
+  static Object zero(Class<?> type) {
+    if (type == boolean.class) {
+      return false;
+    } else if (type == int.class) {
+      return 0;
+    } else if (type == long.class) {
+      return 0L;
+    } else if (type == short.class) {
+      return (short) 0;
+    } else if (type == byte.class) {
+      return (byte) 0;
+    } else if (type == char.class) {
+      return (char) 0;
+    } else if (type == float.class) {
+      return 0f;
+    } else if (type == double.class) {
+      return 0d;
+    }
+    return null;
+  }
+
+  /**
+   * A font with fixed per-character advances that measures text the way the
+   * client does: {@code <lt>} and {@code <gt>} are one glyph and other tags
+   * take no space.
+   */
+  static FontTypeFace font() {
+    return (FontTypeFace) Proxy.newProxyInstance(
+        FontTypeFace.class.getClassLoader(), new Class<?>[]{FontTypeFace.class},
+        (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "getTextWidth":
+              return textWidth((String) args[0]);
+            case "getBaseline":
+              return 12;
+            case "hashCode":
+              return System.identityHashCode(proxy);
+            case "equals":
+              return proxy == args[0];
+            default:
+              return zero(method.getReturnType());
+          }
+        });
+  }
+
+  static int textWidth(String text) {
+    int width = 0;
+    int tagStart = -1;
+    for (int i = 0; i < text.length(); i++) {
+      final char c = text.charAt(i);
+      if (c == '<') {
+        tagStart = i;
+      } else if (c == '>' && tagStart != -1) {
+        final String tag = text.substring(tagStart + 1, i);
+        if (tag.equals("lt") || tag.equals("gt")) {
+          width += 6;
+        }
+        tagStart = -1;
+      } else if (tagStart == -1) {
+        width += advance(c);
+      }
+    }
+    return width;
+  }
+
+  private static int advance(char c) {
+    switch (c) {
+      case ' ':
+        return 4;
+      case 'i':
+      case 'l':
+      case '.':
+      case ',':
+      case '\'':
+      case '!':
+      case '|':
+        return 3;
+      case '[':
+      case ']':
+      case 'f':
+      case 't':
+      case 'j':
+      case 'r':
+        return 4;
+      case 'm':
+      case 'w':
+      case 'M':
+      case 'W':
+        return 8;
+      default:
+        return Character.isUpperCase(c) ? 7 : 6;
+    }
+  }
+
+  // the client's config proxy caches parsed values, so the same colors are returned every time
+  private static final Color TEXT_COLOR = new Color(85, 175, 251);
+  private static final Color HOVER_COLOR = new Color(85, 175, 251, 150);
+
+  static InteractiveChatConfig config() {
+    return (InteractiveChatConfig) Proxy.newProxyInstance(
+        InteractiveChatConfig.class.getClassLoader(), new Class<?>[]{InteractiveChatConfig.class},
+        (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "textColor":
+              return TEXT_COLOR;
+            case "onHover":
+              return HoverMode.UNDERLINE;
+            case "hoverColor":
+              return HOVER_COLOR;
+            case "hashCode":
+              return System.identityHashCode(proxy);
+            case "equals":
+              return proxy == args[0];
+            default:
+              return zero(method.getReturnType());
+          }
+        });
+  }
+
+  /**
+   * A {@link Client} with a settable mouse position, widgets and varps.
+   */
+  static class StubClient {
+    final Map<WidgetInfo, Widget> widgets = new HashMap<>();
+    final Map<Integer, Integer> varps = new HashMap<>();
+    final Map<Integer, Integer> varbits = new HashMap<>();
+    int mouseX = -1;
+    int mouseY = -1;
+    int chatRefreshes;
+    String typedText = "";
+
+    final Client client = (Client) Proxy.newProxyInstance(
+        Client.class.getClassLoader(), new Class<?>[]{Client.class},
+        (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "getMouseCanvasPosition":
+              return new Point(mouseX, mouseY);
+            case "getWidget":
+              return args.length == 1 ? widgets.get(args[0]) : null;
+            case "getVarpValue":
+              return args.length == 1 ? varps.getOrDefault(args[0], 0) : 0;
+            case "getVarbitValue":
+              return args.length == 1 ? varbits.getOrDefault(args[0], 0) : 0;
+            case "getVar":
+              return method.getReturnType() == String.class ? typedText : 0;
+            case "refreshChat":
+              chatRefreshes++;
+              return null;
+            case "hashCode":
+              return System.identityHashCode(proxy);
+            case "equals":
+              return proxy == args[0];
+            default:
+              return zero(method.getReturnType());
+          }
+        });
+  }
+
+  @SuppressWarnings("unchecked")
+  static <T> T field(Object target, String fieldName) {
+    try {
+      final Field field = target.getClass().getDeclaredField(fieldName);
+      field.setAccessible(true);
+      return (T) field.get(target);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Unable to read " + fieldName, e);
+    }
+  }
+
+  static void inject(Object target, String fieldName, Object value) {
+    try {
+      final Field field = target.getClass().getDeclaredField(fieldName);
+      field.setAccessible(true);
+      field.set(target, value);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Unable to set " + fieldName, e);
+    }
+  }
+}
@@ -0,0 +1,152 @@
+/*
+
+Copyright (c) 2021, Richard Cane
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package com.interactivechat;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TitleDictionaryTest {
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private File directory;
+  private File compiled;
+  private TitleDictionary titles;
+
+  @Before
+  public void before() throws IOException {
+    directory = folder.newFolder("interactivechat");
+    compiled = new File(directory, "titles.bin");
+    titles = new TitleDictionary(null, directory);
+  }
+
+  @Test
+  public void compiledTitlesAreWrittenOnce() throws IOException {
+    final int size = titles.loadTitles().index.size();
+    assertTrue(size > 0);
+    assertArrayEquals(new String[]{"titles.bin"}, directory.list());
+
+    final byte[] written = Files.readAllBytes(compiled.toPath());
+    compiled.setLastModified(0);
+    assertEquals(size, titles.loadTitles().index.size());
+    assertEquals(0, compiled.lastModified());
+    assertArrayEquals(written, Files.readAllBytes(compiled.toPath()));
+  }
+
+  @Test
+  public void damagedCompiledTitlesAreRebuilt() throws IOException {
+    final int size = titles.loadTitles().index.size();
+    final byte[] written = Files.readAllBytes(compiled.toPath());
+
+    final byte[] damaged = written.clone();
+    damaged[damaged.length / 2] ^= 0x10;
+    Files.write(compiled.toPath(), damaged);
+
+    assertEquals(size, titles.loadTitles().index.size());
+    assertArrayEquals(written, Files.readAllBytes(compiled.toPath()));
+  }
+
+  @Test
+  public void truncatedCompiledTitlesAreRebuilt() throws IOException {
+    final int size = titles.loadTitles().index.size();
+    final byte[] written = Files.readAllBytes(compiled.toPath());
+
+    final byte[] truncated = new byte[written.length - 100];
+    System.arraycopy(written, 0, truncated, 0, truncated.length);
+    Files.write(compiled.toPath(), truncated);
+
+    assertEquals(size, titles.loadTitles().index.size());
+    assertArrayEquals(written, Files.readAllBytes(compiled.toPath()));
+    assertArrayEquals(new String[]{"titles.bin"}, directory.list());
+  }
+
+  // a payload the checksum vouches for, but the readers reject
+  @Test
+  public void unreadableCompiledTitlesAreRebuilt() throws IOException {
+    final int size = titles.loadTitles().index.size();
+    final byte[] written = Files.readAllBytes(compiled.toPath());
+
+    final ByteBuffer header = ByteBuffer.wrap(written, 0, 16);
+    final byte[] payload = new byte[64];
+    Arrays.fill(payload, (byte) 0x7f);
+    final CRC32 crc = new CRC32();
+    crc.update(payload);
+    final ByteBuffer unreadable = ByteBuffer.allocate(28 + payload.length);
+    unreadable.put(header).putInt(payload.length).putLong(crc.getValue()).put(payload);
+    Files.write(compiled.toPath(), unreadable.array());
+
+    assertEquals(size, titles.loadTitles().index.size());
+    assertArrayEquals(written, Files.readAllBytes(compiled.toPath()));
+  }
+
+  @Test
+  public void failedLoadIsRetried() throws Exception {
+    final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    final AtomicInteger attempts = new AtomicInteger();
+    final TitleDictionary failing = new TitleDictionary(executor, directory) {
+      @Override
+      Loaded loadTitles() {
+        if (attempts.getAndIncrement() == 0) {
+          throw new IllegalStateException();
+        }
+        return super.loadTitles();
+      }
+    };
+
+    try {
+      failing.update(true, false, false);
+      executor.submit(() -> { }).get();
+      assertNull(failing.automaton());
+
+      failing.update(true, false, false);
+      executor.submit(() -> { }).get();
+      assertNotNull(failing.automaton());
+      assertEquals(2, attempts.get());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,272 @@
+/*
+
+Copyright (c) 2021, Richard Cane
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+package com.interactivechat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+
+public class WikiPreviewCacheTest {
+  private static final String WHIP = "{\"batchcomplete\":true,\"query\":{\"pages\":[{\"pageid\":1,\"ns\":0,"
+      + "\"title\":\"Abyssal whip\",\"index\":1,\"extract\":\"The abyssal whip <tradeable> &lt;\\n\\nA whip.\"}]}}";
+  private static final String NOTHING_FOUND = "{\"batchcomplete\":true}";
+  private static final long WAIT_MILLIS = 5000;
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private final AtomicInteger requests = new AtomicInteger();
+  private final CountDownLatch received = new CountDownLatch(1);
+  private volatile int status = 200;
+  private volatile String body = WHIP;
+  private volatile CountDownLatch hold = new CountDownLatch(0);
+
+  private ServerSocket server;
+  private ScheduledExecutorService executor;
+  private OkHttpClient okHttpClient;
+  private File cacheDir;
+
+  @Before
+  public void before() throws IOException {
+    server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    final Thread accept = new Thread(this::serve, "wiki-test-server");
+    accept.setDaemon(true);
+    accept.start();
+
+    executor = Executors.newSingleThreadScheduledExecutor();
+    okHttpClient = new OkHttpClient();
+    cacheDir = new File(folder.getRoot(), "wiki");
+  }
+
+  @After
+  public void after() throws IOException {
+    hold.countDown();
+    server.close();
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void hitFillsMemoryAndDisk() throws Exception {
+    final WikiPreviewCache cache = newCache();
+    cache.fetch("Abyssal whip");
+    await(() -> cache.get("abyssal whip") != null);
+
+    final WikiPreview preview = cache.get("ABYSSAL WHIP");
+    assertEquals("Abyssal whip", preview.getTitle());
+    assertEquals("The abyssal whip <tradeable> &lt; A whip.", preview.getSummary());
+    assertEquals(1, cacheDir.listFiles().length);
+
+    // a fresh cache finds it on disk without asking the wiki
+    final WikiPreviewCache restarted = newCache();
+    restarted.fetch("abyssal whip");
+    await(() -> restarted.get("abyssal whip") != null);
+    assertEquals(preview.getSummary(), restarted.get("abyssal whip").getSummary());
+    assertEquals(1, requests.get());
+  }
+
+  @Test
+  public void repeatedTermIsRequestedOnce() throws Exception {
+    final WikiPreviewCache cache = newCache();
+    cache.fetch("Abyssal whip");
+    cache.fetch("abyssal whip");
+    await(() -> cache.get("abyssal whip") != null);
+
+    cache.fetch("Abyssal Whip");
+    executor.submit(() -> { }).get();
+    assertEquals(1, requests.get());
+  }
+
+  @Test
+  public void failureIsNotCached() throws Exception {
+    status = 500;
+    final WikiPreviewCache cache = newCache();
+    cache.fetch("abyssal whip");
+    await(() -> requests.get() == 1);
+
+    status = 200;
+    // a fetch is ignored while the failed one is still pending
+    await(() -> {
+      cache.fetch("abyssal whip");
+      return requests.get() == 2;
+    });
+    await(() -> cache.get("abyssal whip") != null);
+    assertEquals(1, cacheDir.listFiles().length);
+  }
+
+  @Test
+  public void errorResponseIsNotWrittenToDisk() throws Exception {
+    status = 500;
+    final WikiPreviewCache cache = newCache();
+    cache.fetch("abyssal whip");
+    await(() -> requests.get() == 1);
+    executor.submit(() -> { }).get();
+
+    assertNull(cache.get("abyssal whip"));
+    assertTrue(!cacheDir.exists() || cacheDir.listFiles().length == 0);
+  }
+
+  @Test(timeout = WAIT_MILLIS)
+  public void getDoesNotWaitForTheRequest() throws Exception {
+    hold = new CountDownLatch(1);
+    final WikiPreviewCache cache = newCache();
+    cache.fetch("abyssal whip");
+    received.await();
+
+    // the server is holding the response, and the render path still returns
+    assertNull(cache.get("abyssal whip"));
+    cache.fetch("abyssal whip");
+    assertNull(cache.get("abyssal whip"));
+
+    hold.countDown();
+    await(() -> cache.get("abyssal whip") != null);
+    assertEquals(1, requests.get());
+  }
+
+  @Test
+  public void diskHitIsKeptLongest() throws Exception {
+    final WikiPreviewCache cache = newCache();
+    cache.fetch("abyssal whip");
+    await(() -> cache.get("abyssal whip") != null);
+
+    final File file = cacheDir.listFiles()[0];
+    assertTrue(file.setLastModified(1000));
+    final WikiPreviewCache restarted = newCache();
+    restarted.fetch("abyssal whip");
+    await(() -> restarted.get("abyssal whip") != null);
+    assertTrue(file.lastModified() > 1000);
+    assertEquals(1, requests.get());
+  }
+
+  @Test
+  public void missingPageIsLookedUpAgainAfterADay() throws Exception {
+    body = NOTHING_FOUND;
+    final WikiPreviewCache cache = newCache();
+    cache.fetch("abyssal whip");
+    await(() -> cache.get("abyssal whip") != null);
+    assertTrue(cache.get("abyssal whip").isMissing());
+
+    // still missing on disk for now
+    final WikiPreviewCache restarted = newCache();
+    restarted.fetch("abyssal whip");
+    await(() -> restarted.get("abyssal whip") != null);
+    assertTrue(restarted.get("abyssal whip").isMissing());
+    assertEquals(1, requests.get());
+
+    body = WHIP;
+    final File file = cacheDir.listFiles()[0];
+    assertTrue(file.setLastModified(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(2)));
+    final WikiPreviewCache dayLater = newCache();
+    dayLater.fetch("abyssal whip");
+    await(() -> dayLater.get("abyssal whip") != null);
+    assertEquals("Abyssal whip", dayLater.get("abyssal whip").getTitle());
+    assertEquals(2, requests.get());
+  }
+
+  @Test
+  public void emptySearchIsMissing() {
+    final WikiPreview preview = WikiPreviewCache.parse(NOTHING_FOUND);
+    assertNotNull(preview);
+    assertTrue(preview.isMissing());
+    assertFalse(preview.isExpired(System.currentTimeMillis()));
+    assertTrue(preview.isExpired(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1)));
+  }
+
+  private WikiPreviewCache newCache() {
+    return new WikiPreviewCache(okHttpClient, executor, HttpUrl.parse("http://127.0.0.1:" + server.getLocalPort()), cacheDir);
+  }
+
+  private static void await(BooleanSupplier condition) throws InterruptedException {
+    final long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+    while (!condition.getAsBoolean()) {
+      assertTrue("timed out", System.currentTimeMillis() < deadline);
+      Thread.sleep(5);
+    }
+  }
+
+  private void serve() {
+    while (!server.isClosed()) {
+      try (Socket socket = server.accept()) {
+        final BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        final String requestLine = in.readLine();
+        String header;
+        do {
+          header = in.readLine();
+        } while (header != null && !header.isEmpty());
+        if (requestLine == null || !requestLine.startsWith("GET /api.php?")) {
+          continue;
+        }
+
+        received.countDown();
+        hold.await();
+        final int status = this.status;
+        requests.incrementAndGet();
+
+        final byte[] body = (status == 200 ? this.body : "error").getBytes(StandardCharsets.UTF_8);
+        final OutputStream out = socket.getOutputStream();
+        out.write(("HTTP/1.1 " + status + (status == 200 ? " OK" : " Error") + "\r\n"
+            + "Content-Type: application/json\r\n"
+            + "Content-Length: " + body.length + "\r\n"
+            + "Connection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.write(body);
+        out.flush();
+      } catch (SocketException e) {
+        return;
+      } catch (IOException | InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+}